@@ -16,9 +16,12 @@
 package org.wildfly.swarm.bootstrap.m2;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.wildfly.swarm.bootstrap.util.ArtifactCache;
 
 /**
  * @author Bob McWhirter
@@ -33,6 +36,14 @@ public class JarRepositoryResolver extends RepositoryResolver {
         path.append(SEPARATOR);
         path.append(gavToPath(gav));
 
+        ArtifactCache cache = ArtifactCache.getInstance();
+        if (cache != null) {
+            File cached = cache.resolve(path.toString());
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         InputStream in = this.getClass().getClassLoader().getResourceAsStream(path.toString());
         if (in == null) {
             return null;
@@ -41,19 +52,7 @@ public class JarRepositoryResolver extends RepositoryResolver {
         try {
             File tmp = File.createTempFile(gav.replace(':', '~'), ".jar");
             tmp.deleteOnExit();
-
-            FileOutputStream out = new FileOutputStream(tmp);
-
-            try {
-                byte[] buf = new byte[1024];
-                int len = -1;
-
-                while ((len = in.read(buf)) >= 0) {
-                    out.write(buf, 0, len);
-                }
-            } finally {
-                out.close();
-            }
+            Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
             return tmp;
         } finally {
             in.close();
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.modules;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jboss.modules.maven.ArtifactCoordinates;
+import org.jboss.modules.maven.MavenResolver;
+import org.wildfly.swarm.bootstrap.util.DependencyLayer;
+
+/**
+ * Resolves the artifacts a thin uber-jar lists in its dependency layer.
+ *
+ * @author Bob McWhirter
+ */
+public class DependencyLayerMavenResolver implements MavenResolver {
+
+    public DependencyLayerMavenResolver(DependencyLayer layer) {
+        this.layer = layer;
+    }
+
+    @Override
+    public File resolveArtifact(ArtifactCoordinates coordinates, String packaging) throws IOException {
+        return this.layer.resolve(UberJarMavenResolver.jarPath(coordinates, packaging));
+    }
+
+    private final DependencyLayer layer;
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.modules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import org.jboss.modules.AbstractResourceLoader;
+import org.jboss.modules.ClassSpec;
+import org.jboss.modules.PackageSpec;
+import org.jboss.modules.PathUtils;
+import org.jboss.modules.Resource;
+import org.wildfly.swarm.bootstrap.util.MappedJarIndex;
+
+/**
+ * Resource-loader serving a directory of an uber-jar directly out of its
+ * memory-mapped index, without exploding it to disk.
+ *
+ * @author Bob McWhirter
+ */
+public class MappedJarResourceLoader extends AbstractResourceLoader {
+
+    public MappedJarResourceLoader(String rootName, MappedJarIndex index, String relativePath) throws MalformedURLException {
+        this.rootName = rootName;
+        this.index = index;
+
+        String canonical = PathUtils.canonicalize(PathUtils.relativize(relativePath));
+        this.prefix = canonical.isEmpty() || canonical.endsWith("/") ? canonical : canonical + "/";
+
+        this.rootUrl = entryUrl(this.prefix);
+        this.codeSource = new CodeSource(this.rootUrl, (CodeSigner[]) null);
+    }
+
+    @Override
+    public String getRootName() {
+        return this.rootName;
+    }
+
+    @Override
+    public ClassSpec getClassSpec(String fileName) throws IOException {
+        MappedJarIndex.Entry entry = this.index.getEntry(this.prefix + fileName);
+        if (entry == null) {
+            return null;
+        }
+        ClassSpec spec = new ClassSpec();
+        spec.setBytes(this.index.getBytes(entry));
+        spec.setCodeSource(this.codeSource);
+        return spec;
+    }
+
+    @Override
+    public PackageSpec getPackageSpec(String name) throws IOException {
+        return getPackageSpec(name, getManifest(), this.rootUrl);
+    }
+
+    @Override
+    public Resource getResource(String name) {
+        String path = PathUtils.canonicalize(PathUtils.relativize(name));
+        MappedJarIndex.Entry entry = this.index.getEntry(this.prefix + path);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+        return new MappedResource(path, entry);
+    }
+
+    @Override
+    public synchronized Collection<String> getPaths() {
+        if (this.paths == null) {
+            Set<String> paths = new HashSet<>();
+            for (MappedJarIndex.Entry each : this.index.getEntries()) {
+                String name = each.getName();
+                if (!name.startsWith(this.prefix)) {
+                    continue;
+                }
+                // include every enclosing directory, matching the exploded file-based loader
+                String relative = name.substring(this.prefix.length());
+                paths.add("");
+                int slashLoc = relative.indexOf('/');
+                while (slashLoc > 0) {
+                    paths.add(relative.substring(0, slashLoc));
+                    slashLoc = relative.indexOf('/', slashLoc + 1);
+                }
+            }
+            this.paths = Collections.unmodifiableSet(paths);
+        }
+        return this.paths;
+    }
+
+    private synchronized Manifest getManifest() throws IOException {
+        if (!this.manifestLoaded) {
+            MappedJarIndex.Entry entry = this.index.getEntry(this.prefix + "META-INF/MANIFEST.MF");
+            if (entry != null) {
+                try (InputStream in = this.index.getInputStream(entry)) {
+                    this.manifest = new Manifest(in);
+                }
+            }
+            this.manifestLoaded = true;
+        }
+        return this.manifest;
+    }
+
+    private URL entryUrl(String name) throws MalformedURLException {
+        return new URL("jar:" + this.index.getFile().toURI() + "!/" + name);
+    }
+
+    private class MappedResource implements Resource {
+
+        MappedResource(String name, MappedJarIndex.Entry entry) {
+            this.name = name;
+            this.entry = entry;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public URL getURL() {
+            try {
+                return entryUrl(this.entry.getName());
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return index.getInputStream(this.entry);
+        }
+
+        @Override
+        public long getSize() {
+            return this.entry.getSize();
+        }
+
+        private final String name;
+
+        private final MappedJarIndex.Entry entry;
+    }
+
+    private final String rootName;
+
+    private final MappedJarIndex index;
+
+    private final String prefix;
+
+    private final URL rootUrl;
+
+    private final CodeSource codeSource;
+
+    private Collection<String> paths;
+
+    private Manifest manifest;
+
+    private boolean manifestLoaded;
+}
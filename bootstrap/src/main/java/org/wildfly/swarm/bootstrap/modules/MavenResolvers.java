@@ -15,8 +15,11 @@
  */
 package org.wildfly.swarm.bootstrap.modules;
 
+import java.io.IOException;
+
 import org.jboss.modules.maven.MavenResolver;
 import org.wildfly.swarm.bootstrap.util.BootstrapProperties;
+import org.wildfly.swarm.bootstrap.util.DependencyLayer;
 
 /**
  * @author Bob McWhirter
@@ -27,6 +30,14 @@ public class MavenResolvers {
 
     static {
         INSTANCE.addResolver( new UberJarMavenResolver() );
+        try {
+            DependencyLayer layer = DependencyLayer.getInstance();
+            if ( layer != null ) {
+                INSTANCE.addResolver( new DependencyLayerMavenResolver( layer ) );
+            }
+        } catch (IOException e) {
+            System.err.println( "Unable to read dependency layer: " + e.getMessage() );
+        }
         if ( System.getProperty(BootstrapProperties.BUNDLED_DEPENDENCIES) == null ) {
             System.err.println( "Dependencies not bundled, will resolve from local M2REPO");
             INSTANCE.addResolver( MavenResolver.createDefaultResolver() );
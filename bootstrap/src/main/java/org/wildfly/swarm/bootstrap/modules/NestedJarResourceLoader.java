@@ -17,25 +17,28 @@ package org.wildfly.swarm.bootstrap.modules;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import org.jboss.modules.ResourceLoader;
 import org.jboss.modules.ResourceLoaders;
+import org.wildfly.swarm.bootstrap.util.BootstrapProperties;
+import org.wildfly.swarm.bootstrap.util.MappedJarIndex;
 
 /**
  * @author Bob McWhirter
  */
 public class NestedJarResourceLoader {
 
-    private static Map<String, File> exploded = new HashMap<>();
+    private static Map<String, File> exploded = new ConcurrentHashMap<>();
 
     public static ResourceLoader loaderFor(URL base, String rootPath, String loaderPath, String loaderName) throws IOException {
 
@@ -45,31 +48,26 @@ public class NestedJarResourceLoader {
             int endLoc = base.toExternalForm().indexOf(".jar!");
             if (endLoc > 0) {
                 String jarPath = base.toExternalForm().substring(9, endLoc + 4);
+                String relativeRoot = base.toExternalForm().substring(endLoc + 5);
 
-                File exp = exploded.get(jarPath);
-
-                if (exp == null) {
-                    exp = File.createTempFile("module-jar", ".jar_d");
-                    exp.delete();
-                    exp.mkdirs();
-                    exp.deleteOnExit();
-
-                    JarFile jarFile = new JarFile(jarPath);
-
-                    Enumeration<JarEntry> entries = jarFile.entries();
-
-                    while (entries.hasMoreElements()) {
-                        JarEntry each = entries.nextElement();
+                if (Boolean.getBoolean(BootstrapProperties.MAPPED_MODULES)) {
+                    return new MappedJarResourceLoader(loaderName, MappedJarIndex.forJar(new File(jarPath)), relativeRoot + loaderPath);
+                }
 
-                        if (!each.isDirectory()) {
-                            File out = new File(exp, each.getName());
-                            out.getParentFile().mkdirs();
-                            Files.copy(jarFile.getInputStream(each), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                File exp;
+                try {
+                    // modules may be loaded concurrently, explode each jar once
+                    exp = exploded.computeIfAbsent(jarPath, (path) -> {
+                        try {
+                            return explode(path);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
                         }
-                    }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
                 }
 
-                String relativeRoot = base.toExternalForm().substring(endLoc + 5);
                 File resourceRoot = new File( new File( exp, relativeRoot ), loaderPath );
                 /*
                 if ( resourceRoot.listFiles() != null ) {
@@ -83,4 +81,27 @@ public class NestedJarResourceLoader {
         return ResourceLoaders.createFileResourceLoader(loaderPath, new File(rootPath));
     }
 
+    private static File explode(String jarPath) throws IOException {
+        File exp = File.createTempFile("module-jar", ".jar_d");
+        exp.delete();
+        exp.mkdirs();
+        exp.deleteOnExit();
+
+        try (JarFile jarFile = new JarFile(jarPath)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+
+            while (entries.hasMoreElements()) {
+                JarEntry each = entries.nextElement();
+
+                if (!each.isDirectory()) {
+                    File out = new File(exp, each.getName());
+                    out.getParentFile().mkdirs();
+                    Files.copy(jarFile.getInputStream(each), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        return exp;
+    }
+
 }
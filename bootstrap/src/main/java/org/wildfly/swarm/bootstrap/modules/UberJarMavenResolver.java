@@ -26,6 +26,7 @@ import java.util.regex.Pattern;
 
 import org.jboss.modules.maven.ArtifactCoordinates;
 import org.jboss.modules.maven.MavenResolver;
+import org.wildfly.swarm.bootstrap.util.ArtifactCache;
 
 /**
  * @author Bob McWhirter
@@ -35,13 +36,15 @@ public class UberJarMavenResolver implements MavenResolver {
     @Override
     public File resolveArtifact(ArtifactCoordinates coordinates, String packaging) throws IOException {
 
-        String artifactRelativePath = "m2repo/" + relativeArtifactPath('/', coordinates.getGroupId(), coordinates.getArtifactId(), coordinates.getVersion());
-        String classifier = "";
-        if ( coordinates.getClassifier() != null && ! coordinates.getClassifier().trim().isEmpty() ) {
-            classifier = "-" + coordinates.getClassifier();
-        }
+        String jarPath = jarPath(coordinates, packaging);
 
-        String jarPath = artifactRelativePath + classifier + "." + packaging;
+        ArtifactCache cache = ArtifactCache.getInstance();
+        if (cache != null) {
+            File cached = cache.resolve(jarPath);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
         InputStream stream = UberJarMavenResolver.class.getClassLoader().getResourceAsStream(jarPath);
 
@@ -52,6 +55,16 @@ public class UberJarMavenResolver implements MavenResolver {
         return null;
     }
 
+    static String jarPath(ArtifactCoordinates coordinates, String packaging) {
+        String artifactRelativePath = "m2repo/" + relativeArtifactPath('/', coordinates.getGroupId(), coordinates.getArtifactId(), coordinates.getVersion());
+        String classifier = "";
+        if ( coordinates.getClassifier() != null && ! coordinates.getClassifier().trim().isEmpty() ) {
+            classifier = "-" + coordinates.getClassifier();
+        }
+
+        return artifactRelativePath + classifier + "." + packaging;
+    }
+
     public static File copyTempJar(String artifactId, InputStream in, String packaging) throws IOException {
         Path tmp = Files.createTempFile(artifactId, "." + packaging);
         Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING );
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Persistent cache of artifacts extracted from the uber-jar's <code>m2repo/</code>.
+ *
+ * <p>Extracted files are keyed by the SHA-256 digest of the entry's raw bytes
+ * in the uber-jar plus its uncompressed size. The digest is taken over the
+ * mapped region of the uber-jar, so a lookup never inflates or copies the
+ * nested jar, and an artifact is only written to disk the first time any JVM
+ * sees that content. Stored (uncompressed) entries are written straight out
+ * of the mapped offset/length region of the uber-jar without being inflated.</p>
+ *
+ * <p>Digests are only computed the first time an uber-jar is seen. They are
+ * recorded in the cache directory under the identity of the uber-jar (path,
+ * size and modification time), so later boots of the same uber-jar resolve
+ * cached artifacts without reading them.</p>
+ *
+ * <p>Enabled by pointing <code>swarm.artifact.cache</code> at a directory.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class ArtifactCache {
+
+    private static ArtifactCache INSTANCE;
+
+    private static boolean initialized;
+
+    private static final String KEYS = "keys";
+
+    public static synchronized ArtifactCache getInstance() throws IOException {
+        if (!initialized) {
+            initialized = true;
+            String dir = System.getProperty(BootstrapProperties.ARTIFACT_CACHE);
+            if (dir != null) {
+                Path root = uberJarRoot();
+                if (root != null) {
+                    INSTANCE = new ArtifactCache(MappedJarIndex.forJar(root.toFile()), Paths.get(dir));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private static Path uberJarRoot() throws IOException {
+        try {
+            Layout layout = Layout.getInstance();
+            if (layout.isUberJar() && Files.isRegularFile(layout.getRoot())) {
+                return layout.getRoot();
+            }
+            return null;
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public ArtifactCache(MappedJarIndex index, Path dir) {
+        this.index = index;
+        this.dir = dir;
+    }
+
+    /**
+     * Resolve an entry of the uber-jar to a file in the cache, extracting it if required.
+     *
+     * @param path The path of the entry within the uber-jar.
+     * @return The cached file, or <code>null</code> if the uber-jar has no such entry.
+     * @throws IOException If the entry cannot be extracted.
+     */
+    public File resolve(String path) throws IOException {
+        MappedJarIndex.Entry entry = this.index.getEntry(path);
+        if (entry == null || entry.isDirectory()) {
+            return null;
+        }
+
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        Path target = this.dir.resolve(key(entry)).resolve(name);
+
+        if (Files.isRegularFile(target) && Files.size(target) == entry.getSize()) {
+            return target.toFile();
+        }
+
+        AtomicFiles.write(target, (tmp) -> {
+            long crc = entry.isStored() ? writeStored(entry, tmp) : writeInflated(entry, tmp);
+            if (crc != entry.getCrc()) {
+                throw new IOException("Checksum mismatch extracting " + path + " from " + this.index.getFile());
+            }
+        });
+
+        return target.toFile();
+    }
+
+    synchronized String key(MappedJarIndex.Entry entry) throws IOException {
+        Properties keys = keys();
+        String key = keys.getProperty(entry.getName());
+        if (key == null) {
+            MessageDigest digest = Digests.create("SHA-256");
+            digest.update(this.index.getRawBuffer(entry));
+            key = Digests.hex(digest.digest()) + "-" + entry.getSize();
+            keys.setProperty(entry.getName(), key);
+            AtomicFiles.write(getKeysFile(), (tmp) -> {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    keys.store(out, null);
+                }
+            });
+        }
+        return key;
+    }
+
+    /**
+     * @return The file recording the keys of the entries of this uber-jar, as it is now.
+     */
+    Path getKeysFile() throws IOException {
+        File jar = this.index.getFile().getAbsoluteFile();
+        MessageDigest digest = Digests.create("SHA-256");
+        digest.update((jar.getPath() + "\0" + jar.length() + "\0" + jar.lastModified()).getBytes(StandardCharsets.UTF_8));
+        return this.dir.resolve(KEYS).resolve(Digests.hex(digest.digest()) + ".properties");
+    }
+
+    private Properties keys() throws IOException {
+        if (this.keys == null) {
+            this.keys = new Properties();
+            Path file = getKeysFile();
+            if (Files.isRegularFile(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    this.keys.load(in);
+                } catch (IOException | IllegalArgumentException e) {
+                    // digest again
+                    this.keys.clear();
+                }
+            }
+        }
+        return this.keys;
+    }
+
+    private long writeStored(MappedJarIndex.Entry entry, Path out) throws IOException {
+        ByteBuffer raw = this.index.getRawBuffer(entry);
+        CRC32 crc = new CRC32();
+        crc.update(raw.duplicate());
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.WRITE)) {
+            while (raw.hasRemaining()) {
+                channel.write(raw);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private long writeInflated(MappedJarIndex.Entry entry, Path out) throws IOException {
+        try (CheckedInputStream in = new CheckedInputStream(this.index.getInputStream(entry), new CRC32())) {
+            Files.copy(in, out, StandardCopyOption.REPLACE_EXISTING);
+            return in.getChecksum().getValue();
+        }
+    }
+
+    private final MappedJarIndex index;
+
+    private final Path dir;
+
+    // guarded by this
+    private Properties keys;
+}
@@ -23,6 +23,14 @@ public class BootstrapProperties {
 
     public static final String APP_ARTIFACT = "swarm.app.artifact";
 
+    public static final String MAPPED_MODULES = "swarm.modules.mapped";
+
+    public static final String ARTIFACT_CACHE = "swarm.artifact.cache";
+
+    public static final String DEPENDENCY_CACHE = "swarm.dependency.cache";
+
+    public static final String READY_FILE = "swarm.ready.file";
+
     //public
     public static final String DEBUG_PORT = "swarm.debug.port";
 }
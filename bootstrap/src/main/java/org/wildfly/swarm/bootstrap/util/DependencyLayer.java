@@ -0,0 +1,173 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Artifacts of a thin uber-jar, kept outside of it in a content-addressed directory.
+ *
+ * <p>A thin uber-jar carries {@link #INDEX} instead of the artifacts of its
+ * <code>m2repo/</code>, listing the SHA-256 digest and size of each. Artifacts
+ * are looked up as <code>&lt;digest&gt;/&lt;file name&gt;</code> in the directory named
+ * by <code>swarm.dependency.cache</code>, or else in {@link #DEFAULT_DIRECTORY}
+ * next to the uber-jar. Since the path is derived from the content, a single
+ * directory can be shared by any number of applications on a host.</p>
+ *
+ * <p>Every artifact is checked against its digest the first time it is resolved
+ * by a JVM; artifacts which do not match are refused.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class DependencyLayer {
+
+    public static final String INDEX = "META-INF/wildfly-swarm-dependencies.idx";
+
+    public static final String DEFAULT_DIRECTORY = "swarm-dependencies";
+
+    private static DependencyLayer INSTANCE;
+
+    private static boolean initialized;
+
+    /**
+     * @return The layer of the running thin uber-jar, or <code>null</code> if it is not thin.
+     */
+    public static synchronized DependencyLayer getInstance() throws IOException {
+        if (!initialized) {
+            initialized = true;
+            try (InputStream in = DependencyLayer.class.getClassLoader().getResourceAsStream(INDEX)) {
+                if (in != null) {
+                    INSTANCE = new DependencyLayer(directory(), in);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private static Path directory() throws IOException {
+        String dir = System.getProperty(BootstrapProperties.DEPENDENCY_CACHE);
+        if (dir != null) {
+            return Paths.get(dir);
+        }
+        try {
+            Path root = Layout.getInstance().getRoot().toAbsolutePath();
+            return root.getParent().resolve(DEFAULT_DIRECTORY);
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public DependencyLayer(Path dir, InputStream index) throws IOException {
+        this.dir = dir;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(index, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) {
+                    throw new IOException("Invalid line in " + INDEX + ": " + line);
+                }
+                this.entries.put(parts[2], new Entry(parts[0], Long.parseLong(parts[1])));
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return this.dir;
+    }
+
+    /**
+     * Resolve an artifact of the uber-jar's <code>m2repo/</code> to its file in the layer.
+     *
+     * @param path The path the artifact would have within the uber-jar.
+     * @return The file, or <code>null</code> if the layer does not list the artifact.
+     * @throws IOException If the artifact is missing from the directory or does not match its digest.
+     */
+    public File resolve(String path) throws IOException {
+        Entry entry = this.entries.get(path);
+        if (entry == null) {
+            return null;
+        }
+
+        Path file = path(this.dir, entry.digest, path);
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("Missing " + path + " from dependency layer " + this.dir + " (expected " + file + ")");
+        }
+        if (!this.verified.contains(file)) {
+            if (Files.size(file) != entry.size || !digest(file).equals(entry.digest)) {
+                throw new IOException("Integrity check failed for " + file);
+            }
+            this.verified.add(file);
+        }
+        return file.toFile();
+    }
+
+    /**
+     * @return The location of an artifact with the given digest within a layer directory.
+     */
+    public static Path path(Path dir, String digest, String path) {
+        return dir.resolve(digest).resolve(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    /**
+     * @return The hex-encoded SHA-256 digest of a file.
+     */
+    public static String digest(Path file) throws IOException {
+        MessageDigest digest = Digests.create("SHA-256");
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                digest.update(buf, 0, len);
+            }
+        }
+        return Digests.hex(digest.digest());
+    }
+
+    private static class Entry {
+        Entry(String digest, long size) {
+            this.digest = digest;
+            this.size = size;
+        }
+
+        private final String digest;
+
+        private final long size;
+    }
+
+    private final Path dir;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final Set<Path> verified = ConcurrentHashMap.newKeySet();
+}
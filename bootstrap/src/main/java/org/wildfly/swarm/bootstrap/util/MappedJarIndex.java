@@ -0,0 +1,324 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Read-only view of a jar file backed by a memory-mapped buffer.
+ *
+ * <p>The central directory is parsed once into an in-memory index, and entry
+ * contents are served straight from the mapping, so nothing is ever copied to
+ * disk. ZIP64 archives are not supported.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class MappedJarIndex {
+
+    private static final Map<File, MappedJarIndex> INDEXES = new HashMap<>();
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+
+    private static final int END_HEADER_SIG = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int END_HEADER_SIZE = 22;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    public static synchronized MappedJarIndex forJar(File file) throws IOException {
+        File key = file.getCanonicalFile();
+        MappedJarIndex index = INDEXES.get(key);
+        if (index == null) {
+            index = new MappedJarIndex(key);
+            INDEXES.put(key, index);
+        }
+        return index;
+    }
+
+    MappedJarIndex(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Jar too large to map: " + file);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.entries = Collections.unmodifiableMap(readCentralDirectory());
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public Entry getEntry(String name) {
+        return this.entries.get(name);
+    }
+
+    public Collection<Entry> getEntries() {
+        return this.entries.values();
+    }
+
+    /**
+     * Obtain the raw (possibly still compressed) bytes of an entry as a
+     * read-only slice of the mapped jar.
+     */
+    public ByteBuffer getRawBuffer(Entry entry) throws IOException {
+        int headerOffset = (int) entry.localHeaderOffset;
+        if (this.buffer.getInt(headerOffset) != LOCAL_HEADER_SIG) {
+            throw new IOException("Invalid local header for " + entry.name + " in " + this.file);
+        }
+        int dataOffset = headerOffset + LOCAL_HEADER_SIZE
+                + u16(this.buffer, headerOffset + 26)
+                + u16(this.buffer, headerOffset + 28);
+
+        ByteBuffer raw = this.buffer.duplicate();
+        raw.position(dataOffset);
+        raw.limit(dataOffset + (int) entry.compressedSize);
+        return raw.slice().asReadOnlyBuffer();
+    }
+
+    public InputStream getInputStream(Entry entry) throws IOException {
+        if (entry.isStored()) {
+            return new BufferInputStream(getRawBuffer(entry), false);
+        }
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        // nowrap inflaters may need one trailing dummy byte, same as java.util.zip.ZipFile supplies
+        final Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(new BufferInputStream(getRawBuffer(entry), true), inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inflater.end();
+            }
+        };
+    }
+
+    public byte[] getBytes(Entry entry) throws IOException {
+        byte[] bytes = new byte[(int) entry.size];
+        if (entry.isStored()) {
+            getRawBuffer(entry).get(bytes);
+            return bytes;
+        }
+        try (InputStream in = getInputStream(entry)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int len = in.read(bytes, offset, bytes.length - offset);
+                if (len < 0) {
+                    throw new EOFException("Unexpected end of " + entry.name + " in " + this.file);
+                }
+                offset += len;
+            }
+        }
+        return bytes;
+    }
+
+    private Map<String, Entry> readCentralDirectory() throws IOException {
+        int end = findEndHeader();
+        int total = u16(this.buffer, end + 10);
+        long directoryOffset = u32(this.buffer, end + 16);
+
+        if (total == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 jars are not supported: " + this.file);
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>(total * 2);
+        int pos = (int) directoryOffset;
+        for (int i = 0; i < total; ++i) {
+            if (this.buffer.getInt(pos) != CENTRAL_HEADER_SIG) {
+                throw new IOException("Invalid central directory in " + this.file);
+            }
+            int nameLength = u16(this.buffer, pos + 28);
+            byte[] name = new byte[nameLength];
+            ByteBuffer nameBuffer = this.buffer.duplicate();
+            nameBuffer.position(pos + CENTRAL_HEADER_SIZE);
+            nameBuffer.get(name);
+
+            Entry entry = new Entry(new String(name, StandardCharsets.UTF_8),
+                                    u16(this.buffer, pos + 10),
+                                    u32(this.buffer, pos + 16),
+                                    u32(this.buffer, pos + 20),
+                                    u32(this.buffer, pos + 24),
+                                    u32(this.buffer, pos + 42));
+            entries.put(entry.name, entry);
+
+            pos += CENTRAL_HEADER_SIZE + nameLength + u16(this.buffer, pos + 30) + u16(this.buffer, pos + 32);
+        }
+        return entries;
+    }
+
+    private int findEndHeader() throws IOException {
+        int limit = Math.max(0, this.buffer.limit() - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+        for (int pos = this.buffer.limit() - END_HEADER_SIZE; pos >= limit; --pos) {
+            if (this.buffer.getInt(pos) == END_HEADER_SIG) {
+                return pos;
+            }
+        }
+        throw new IOException("Not a jar file: " + this.file);
+    }
+
+    private static int u16(ByteBuffer buffer, int pos) {
+        return buffer.getShort(pos) & 0xFFFF;
+    }
+
+    private static long u32(ByteBuffer buffer, int pos) {
+        return buffer.getInt(pos) & 0xFFFFFFFFL;
+    }
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private final Map<String, Entry> entries;
+
+    public static class Entry {
+
+        Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public boolean isDirectory() {
+            return this.name.endsWith("/");
+        }
+
+        public boolean isStored() {
+            return this.method == ZipEntry.STORED;
+        }
+
+        public int getMethod() {
+            return this.method;
+        }
+
+        public long getCrc() {
+            return this.crc;
+        }
+
+        public long getCompressedSize() {
+            return this.compressedSize;
+        }
+
+        public long getSize() {
+            return this.size;
+        }
+
+        public String toString() {
+            return this.name;
+        }
+
+        private final String name;
+
+        private final int method;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long localHeaderOffset;
+    }
+
+    private static class BufferInputStream extends InputStream {
+
+        BufferInputStream(ByteBuffer buffer, boolean pad) {
+            this.buffer = buffer;
+            this.pad = pad;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!this.buffer.hasRemaining()) {
+                return padding();
+            }
+            return this.buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                if (padding() < 0) {
+                    return -1;
+                }
+                b[off] = 0;
+                return 1;
+            }
+            len = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            int len = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + len);
+            return len;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.buffer.remaining();
+        }
+
+        private int padding() {
+            if (this.pad) {
+                this.pad = false;
+                return 0;
+            }
+            return -1;
+        }
+
+        private final ByteBuffer buffer;
+
+        private boolean pad;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.modules;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.jboss.modules.ClassSpec;
+import org.jboss.modules.Resource;
+import org.jboss.modules.ResourceLoader;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.swarm.bootstrap.util.BootstrapProperties;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class NestedJarResourceLoaderTest {
+
+    private static final int MODULE_COUNT = 200;
+
+    @ClassRule
+    public static TemporaryFolder tmp = new TemporaryFolder();
+
+    private static File jar;
+
+    @BeforeClass
+    public static void createJar() throws Exception {
+        jar = tmp.newFile("nested-loader.jar");
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < MODULE_COUNT; ++i) {
+                String root = "modules/org/test/mod" + i + "/main/";
+                write(out, root + "module.xml", "<module name=\"org.test.mod" + i + "\"/>", false);
+                write(out, root + "org/test/mod" + i + "/Thing.class", "class-bytes-" + i, false);
+                write(out, root + "org/test/mod" + i + "/stored.txt", "stored-" + i, true);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void resetProperty() {
+        System.clearProperty(BootstrapProperties.MAPPED_MODULES);
+    }
+
+    @Test
+    public void testMappedLoaderMatchesExplodedLoader() throws Exception {
+        ResourceLoader exploded = loader(false, 7);
+        ResourceLoader mapped = loader(true, 7);
+
+        assertThat(mapped).isInstanceOf(MappedJarResourceLoader.class);
+        assertThat(new HashSet<>(mapped.getPaths())).isEqualTo(new HashSet<>(exploded.getPaths()));
+
+        ClassSpec explodedClass = exploded.getClassSpec("org/test/mod7/Thing.class");
+        ClassSpec mappedClass = mapped.getClassSpec("org/test/mod7/Thing.class");
+        assertThat(mappedClass.getBytes()).isEqualTo(explodedClass.getBytes());
+
+        for (String name : new String[]{"module.xml", "org/test/mod7/stored.txt", "/org/test/mod7/stored.txt"}) {
+            Resource explodedResource = exploded.getResource(name);
+            Resource mappedResource = mapped.getResource(name);
+            assertThat(mappedResource.getSize()).isEqualTo(explodedResource.getSize());
+            assertThat(read(mappedResource)).isEqualTo(read(explodedResource));
+            try (InputStream in = mappedResource.getURL().openStream()) {
+                assertThat(readFully(in)).isEqualTo(read(explodedResource));
+            }
+        }
+
+        assertThat(mapped.getResource("org/test/mod8/stored.txt")).isNull();
+        assertThat(mapped.getClassSpec("org/test/Missing.class")).isNull();
+    }
+
+    @Test
+    public void testAllModules() throws Exception {
+        for (int i = 0; i < MODULE_COUNT; ++i) {
+            assertThat(read(loader(true, i).getResource("module.xml"))).isEqualTo(read(loader(false, i).getResource("module.xml")));
+        }
+    }
+
+    private static ResourceLoader loader(boolean mapped, int module) throws IOException {
+        System.setProperty(BootstrapProperties.MAPPED_MODULES, Boolean.toString(mapped));
+        URL base = new URL("jar:" + jar.toURI() + "!/modules/org/test/mod" + module + "/main/");
+        return NestedJarResourceLoader.loaderFor(base, "/", ".", "mod" + module);
+    }
+
+    private static void write(JarOutputStream out, String name, String content, boolean stored) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream in = resource.openStream()) {
+            return readFully(in);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+}
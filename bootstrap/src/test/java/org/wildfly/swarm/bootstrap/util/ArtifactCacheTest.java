@@ -0,0 +1,199 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class ArtifactCacheTest {
+
+    private static final String STORED = "m2repo/org/test/stored/1.0/stored-1.0.jar";
+
+    private static final String DEFLATED = "m2repo/org/test/deflated/1.0/deflated-1.0.jar";
+
+    @ClassRule
+    public static TemporaryFolder jars = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] content;
+
+    private static File jar;
+
+    @BeforeClass
+    public static void createJar() throws Exception {
+        content = new byte[64 * 1024];
+        new Random(42).nextBytes(content);
+
+        jar = jars.newFile("artifact-cache.jar");
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            writeStored(out, STORED, content);
+
+            out.putNextEntry(new ZipEntry(DEFLATED));
+            out.write(content);
+            out.closeEntry();
+        }
+    }
+
+    private static void writeStored(JarOutputStream out, String name, byte[] bytes) throws IOException {
+        ZipEntry stored = new ZipEntry(name);
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(bytes.length);
+        stored.setCrc(crc(bytes));
+        out.putNextEntry(stored);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Flip bits in the last five bytes of a copy of <code>bytes</code> so the
+     * result differs but has the same CRC-32. CRC-32 is affine over GF(2), so
+     * any non-zero kernel vector of the 40 bit-flip deltas will do.
+     */
+    private static byte[] collide(byte[] bytes) {
+        int offset = bytes.length - 5;
+        long base = crc(new byte[bytes.length]);
+        long[] values = new long[40];
+        long[] masks = new long[40];
+        int basis = 0;
+        for (int i = 0; i < 40; ++i) {
+            byte[] delta = new byte[bytes.length];
+            delta[offset + i / 8] = (byte) (1 << (i % 8));
+            long value = crc(delta) ^ base;
+            long mask = 1L << i;
+            for (int j = 0; j < basis; ++j) {
+                if ((value ^ values[j]) < value) {
+                    value ^= values[j];
+                    mask ^= masks[j];
+                }
+            }
+            if (value == 0) {
+                byte[] result = bytes.clone();
+                for (int bit = 0; bit < 40; ++bit) {
+                    if ((mask & (1L << bit)) != 0) {
+                        result[offset + bit / 8] ^= (byte) (1 << (bit % 8));
+                    }
+                }
+                return result;
+            }
+            values[basis] = value;
+            masks[basis] = mask;
+            ++basis;
+        }
+        throw new AssertionError("no collision");
+    }
+
+    @Test
+    public void testExtractsOnceAndReuses() throws Exception {
+        File dir = tmp.newFolder();
+        ArtifactCache cache = new ArtifactCache(MappedJarIndex.forJar(jar), dir.toPath());
+
+        for (String path : new String[]{STORED, DEFLATED}) {
+            File first = cache.resolve(path);
+            assertThat(Files.readAllBytes(first.toPath())).isEqualTo(content);
+
+            long modified = first.lastModified();
+            first.setLastModified(modified - 10000);
+
+            File second = new ArtifactCache(MappedJarIndex.forJar(jar), dir.toPath()).resolve(path);
+            assertThat(second).isEqualTo(first);
+            assertThat(second.lastModified()).isEqualTo(modified - 10000);
+        }
+    }
+
+    @Test
+    public void testDigestsOncePerJar() throws Exception {
+        File copy = tmp.newFile("copy.jar");
+        Files.copy(jar.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File dir = tmp.newFolder();
+
+        ArtifactCache cache = new ArtifactCache(MappedJarIndex.forJar(copy), dir.toPath());
+        File first = cache.resolve(STORED);
+        Path keys = cache.getKeysFile();
+        assertThat(Files.isRegularFile(keys)).isTrue();
+
+        // recorded keys are used as is, without digesting the entry again
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(keys, StandardCharsets.ISO_8859_1)) {
+            lines.add(line.startsWith(STORED + "=") ? STORED + "=recorded" : line);
+        }
+        Files.write(keys, lines, StandardCharsets.ISO_8859_1);
+        File second = new ArtifactCache(MappedJarIndex.forJar(copy), dir.toPath()).resolve(STORED);
+        assertThat(second.getParentFile().getName()).isEqualTo("recorded");
+        assertThat(Files.readAllBytes(second.toPath())).isEqualTo(content);
+
+        // a modified jar is digested again
+        copy.setLastModified(copy.lastModified() - 10000);
+        File third = new ArtifactCache(MappedJarIndex.forJar(copy), dir.toPath()).resolve(STORED);
+        assertThat(third).isEqualTo(first);
+    }
+
+    @Test
+    public void testMissingEntry() throws IOException {
+        ArtifactCache cache = new ArtifactCache(MappedJarIndex.forJar(jar), tmp.newFolder().toPath());
+        assertThat(cache.resolve("m2repo/org/test/missing/1.0/missing-1.0.jar")).isNull();
+    }
+
+    @Test
+    public void testSameCrcAndSizeDoNotShareEntry() throws Exception {
+        byte[] other = collide(content);
+        assertThat(other).isNotEqualTo(content);
+        assertThat(crc(other)).isEqualTo(crc(content));
+
+        File otherJar = tmp.newFile("other.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(otherJar))) {
+            writeStored(out, STORED, other);
+        }
+
+        File dir = tmp.newFolder();
+        File first = new ArtifactCache(MappedJarIndex.forJar(jar), dir.toPath()).resolve(STORED);
+        File second = new ArtifactCache(MappedJarIndex.forJar(otherJar), dir.toPath()).resolve(STORED);
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(Files.readAllBytes(first.toPath())).isEqualTo(content);
+        assertThat(Files.readAllBytes(second.toPath())).isEqualTo(other);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.bootstrap.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class DependencyLayerTest {
+
+    private static final String PATH = "m2repo/org/test/artifact/1.0/artifact-1.0.jar";
+
+    private Path dir;
+
+    private String digest;
+
+    @Before
+    public void setUp() throws Exception {
+        this.dir = Files.createTempDirectory("dependency-layer");
+        Path source = Files.createTempFile("artifact", ".jar");
+        Files.write(source, "artifact content".getBytes(StandardCharsets.UTF_8));
+        this.digest = DependencyLayer.digest(source);
+
+        Path target = DependencyLayer.path(this.dir, this.digest, PATH);
+        Files.createDirectories(target.getParent());
+        Files.copy(source, target);
+    }
+
+    @Test
+    public void testResolvesListedArtifacts() throws Exception {
+        DependencyLayer layer = layer(this.digest + " 16 " + PATH);
+
+        File resolved = layer.resolve(PATH);
+        assertThat(resolved.getName()).isEqualTo("artifact-1.0.jar");
+        assertThat(resolved.getParentFile().getName()).isEqualTo(this.digest);
+        assertThat(layer.resolve("m2repo/org/test/other/1.0/other-1.0.jar")).isNull();
+    }
+
+    @Test(expected = IOException.class)
+    public void testRefusesModifiedArtifacts() throws Exception {
+        Files.write(DependencyLayer.path(this.dir, this.digest, PATH), "artifact CONTENT".getBytes(StandardCharsets.UTF_8));
+        layer(this.digest + " 16 " + PATH).resolve(PATH);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingArtifact() throws Exception {
+        layer("0000 16 " + PATH).resolve(PATH);
+    }
+
+    private DependencyLayer layer(String index) throws IOException {
+        return new DependencyLayer(this.dir, new ByteArrayInputStream(index.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -44,6 +44,21 @@ public class SwarmProperties {
     //public
     public static final String ENVIRONMENT = "swarm.environment";
 
+    //public
+    public static final String FRACTION_PARALLELISM = "swarm.fraction.parallelism";
+
+    //public
+    public static final String FRACTION_INDEX = "swarm.fraction.index";
+
+    //public
+    public static final String BOOT_PROFILE = "swarm.boot.profile";
+
+    //public
+    public static final String BOOT_MODEL_CACHE = "swarm.boot.model.cache";
+
+    //public
+    public static final String RIBBON_NOTIFICATION_WINDOW = "swarm.ribbon.notification.window";
+
 
     public static String propertyVar(final String prop) {
         return String.format("${%s}", prop);
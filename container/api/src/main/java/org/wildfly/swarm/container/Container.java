@@ -25,6 +25,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -407,6 +408,30 @@ public class Container {
         return this;
     }
 
+    /**
+     * Deploy several archives at once, allowing them to be deployed concurrently.
+     *
+     * @param deployments The ShrinkWrap archives to deploy.
+     * @return The container.
+     * @throws DeploymentException if any of the archives fails to deploy.
+     */
+    public Container deploy(Collection<? extends Archive<?>> deployments) throws DeploymentException {
+        this.deployer.deploy(deployments);
+        return this;
+    }
+
+    /**
+     * Undeploy a previously deployed archive.
+     *
+     * @param name The name of the deployment.
+     * @return The container.
+     * @throws DeploymentException if the archive is not deployed or fails to undeploy.
+     */
+    public Container undeploy(String name) throws DeploymentException {
+        this.deployer.undeploy(name);
+        return this;
+    }
+
     /**
      * Get the possibly null container main method arguments.
      *
@@ -16,6 +16,7 @@
 package org.wildfly.swarm.container;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.jboss.shrinkwrap.api.Archive;
 
@@ -24,4 +25,29 @@ import org.jboss.shrinkwrap.api.Archive;
  */
 public interface Deployer {
     void deploy(Archive<?> deployment) throws DeploymentException;
+
+    /**
+     * Deploy several archives at once.
+     *
+     * <p>Implementations may prepare and deploy the archives concurrently; by default
+     * they are deployed one at a time, in order.</p>
+     *
+     * @param deployments The ShrinkWrap archives to deploy.
+     * @throws DeploymentException if any of the archives fails to deploy.
+     */
+    default void deploy(Collection<? extends Archive<?>> deployments) throws DeploymentException {
+        for (Archive<?> each : deployments) {
+            deploy(each);
+        }
+    }
+
+    /**
+     * Undeploy a previously deployed archive.
+     *
+     * @param name The name of the deployment.
+     * @throws DeploymentException if the archive is not deployed or fails to undeploy.
+     */
+    default void undeploy(String name) throws DeploymentException {
+        throw new DeploymentException("Undeployment is not supported");
+    }
 }
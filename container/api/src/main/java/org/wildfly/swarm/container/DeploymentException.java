@@ -25,6 +25,7 @@ public class DeploymentException extends Exception {
     private final Archive<?> archive;
 
     public DeploymentException(String message) {
+        super( message );
         this.archive = null;
     }
 
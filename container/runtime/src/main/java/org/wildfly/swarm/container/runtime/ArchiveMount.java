@@ -0,0 +1,166 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.ArchiveAsset;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.jboss.vfs.TempDir;
+import org.jboss.vfs.TempFileProvider;
+import org.jboss.vfs.VFS;
+import org.jboss.vfs.VirtualFile;
+import org.wildfly.swarm.bootstrap.util.Digests;
+
+/**
+ * Mounts a ShrinkWrap archive into the VFS as an expanded directory, writing each
+ * node straight to disk.
+ *
+ * <p>Equivalent to exporting the archive as a ZIP and handing it to
+ * {@link VFS#mountZipExpanded(InputStream, String, VirtualFile, TempFileProvider)},
+ * without deflating and re-inflating every byte on the way. Nested archives are
+ * still written as archives, matching what the ZIP round-trip produced.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class ArchiveMount implements Closeable {
+
+    public static ArchiveMount mountExpanded(Archive<?> archive, VirtualFile mountPoint, TempFileProvider tempFileProvider) throws IOException {
+        TempDir tempDir = tempFileProvider.createTempDir(archive.getName());
+        try {
+            File root = tempDir.getFile(archive.getName());
+            explode(archive, root.toPath());
+            return new ArchiveMount(tempDir, VFS.mountReal(root, mountPoint), root);
+        } catch (IOException | RuntimeException e) {
+            tempDir.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Mount an archive previously exported to <code>zip</code>, so an exported copy
+     * of the deployment does not require exporting it a second time.
+     */
+    public static ArchiveMount mountExpanded(File zip, VirtualFile mountPoint, TempFileProvider tempFileProvider) throws IOException {
+        return new ArchiveMount(null, VFS.mountZipExpanded(zip, mountPoint, tempFileProvider), null);
+    }
+
+    static void explode(Archive<?> archive, Path root) throws IOException {
+        Files.createDirectories(root);
+        for (Map.Entry<ArchivePath, Node> each : archive.getContent().entrySet()) {
+            Path target = root.resolve(each.getKey().get().substring(1));
+            if (!target.normalize().startsWith(root)) {
+                throw new IOException("Archive path outside of deployment: " + each.getKey().get());
+            }
+            Asset asset = each.getValue().getAsset();
+            if (asset == null) {
+                Files.createDirectories(target);
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            if (asset instanceof FileAsset) {
+                Files.copy(((FileAsset) asset).getSource().toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                try (InputStream in = asset.openStream()) {
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    /**
+     * Digest the content of an archive, independently of its name and of how its
+     * assets are stored. Nested archives are digested by their content too.
+     *
+     * @return The hex-encoded SHA-1 digest.
+     */
+    public static String digest(Archive<?> archive) throws IOException {
+        MessageDigest digest = Digests.create("SHA-1");
+        digest(archive, digest, new byte[8192]);
+        return Digests.hex(digest.digest());
+    }
+
+    private static void digest(Archive<?> archive, MessageDigest digest, byte[] buf) throws IOException {
+        Map<ArchivePath, Node> content = new TreeMap<>((l, r) -> l.get().compareTo(r.get()));
+        content.putAll(archive.getContent());
+        for (Map.Entry<ArchivePath, Node> each : content.entrySet()) {
+            digest.update(each.getKey().get().getBytes(StandardCharsets.UTF_8));
+            Asset asset = each.getValue().getAsset();
+            if (asset == null) {
+                digest.update((byte) 0);
+            } else if (asset instanceof ArchiveAsset) {
+                digest.update((byte) 1);
+                digest(((ArchiveAsset) asset).getArchive(), digest, buf);
+                digest.update((byte) 0);
+            } else {
+                digest.update((byte) 2);
+                long total = 0;
+                try (InputStream in = asset.openStream()) {
+                    int len;
+                    while ((len = in.read(buf)) >= 0) {
+                        digest.update(buf, 0, len);
+                        total += len;
+                    }
+                }
+                digest.update(Long.toString(total).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    ArchiveMount(TempDir tempDir, Closeable mount, File root) {
+        this.tempDir = tempDir;
+        this.mount = mount;
+        this.root = root;
+    }
+
+    /**
+     * @return The directory backing the mount, or <code>null</code> if it is managed by the VFS.
+     */
+    public File getRoot() {
+        return this.root;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.mount.close();
+        } finally {
+            if (this.tempDir != null) {
+                this.tempDir.close();
+            }
+        }
+    }
+
+    private final TempDir tempDir;
+
+    private final Closeable mount;
+
+    private final File root;
+}
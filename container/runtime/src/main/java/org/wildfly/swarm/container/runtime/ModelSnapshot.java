@@ -0,0 +1,194 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.wildfly.swarm.SwarmProperties;
+import org.wildfly.swarm.bootstrap.logging.BootstrapLogger;
+import org.wildfly.swarm.bootstrap.util.AtomicFiles;
+import org.wildfly.swarm.bootstrap.util.BootstrapProperties;
+import org.wildfly.swarm.bootstrap.util.Digests;
+import org.wildfly.swarm.bootstrap.util.Layout;
+import org.wildfly.swarm.container.Container;
+import org.wildfly.swarm.container.Fraction;
+
+/**
+ * Binary DMR snapshot of the boot operation list, replayed instead of asking every
+ * fraction to build its model again.
+ *
+ * <p>Enabled by pointing <code>swarm.boot.model.cache</code> at a directory. Each
+ * snapshot is keyed by a digest of everything the model is derived from, so it is
+ * ignored (and a new one written) whenever any of these change:</p>
+ *
+ * <ul>
+ * <li>the WildFly Swarm version,</li>
+ * <li>the application (path, size and modification time of the uber-jar),</li>
+ * <li>the fraction types in use and the server configurations handling them,</li>
+ * <li>any system property or environment variable, but for the management UUID
+ * and the ready file, which differ on every launch,</li>
+ * <li>the command-line arguments.</li>
+ * </ul>
+ *
+ * <p>Snapshots are only used when running from an uber-jar: a classes directory
+ * can change underneath an unchanged directory timestamp. Fractions configured
+ * in code are assumed to be a pure function of the above, which holds for
+ * immutable images. Unreadable snapshots are discarded.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class ModelSnapshot {
+
+    private static final String MANAGEMENT_UUID = "jboss.server.management.uuid";
+
+    // differ on every launch without affecting the model
+    private static final Set<String> IGNORED_PROPERTIES = new HashSet<>(Arrays.asList(MANAGEMENT_UUID, BootstrapProperties.READY_FILE));
+
+    private static final BootstrapLogger LOG = BootstrapLogger.logger("org.wildfly.swarm.runtime.model-snapshot");
+
+    /**
+     * @return The snapshot for this boot, or <code>null</code> if snapshots are not enabled.
+     */
+    public static ModelSnapshot forContainer(Container config, List<? extends ServerConfiguration<?>> configs) throws Exception {
+        String dir = System.getProperty(SwarmProperties.BOOT_MODEL_CACHE);
+        if (dir == null) {
+            return null;
+        }
+        Path root = Layout.getInstance().getRoot();
+        if (!Files.isRegularFile(root)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("not using a boot model snapshot, " + root + " is not an uber-jar");
+            }
+            return null;
+        }
+
+        TreeSet<String> types = new TreeSet<>();
+        for (Fraction each : config.fractions()) {
+            types.add("fraction:" + each.getClass().getName());
+        }
+        for (ServerConfiguration<?> each : configs) {
+            types.add("configuration:" + each.getClass().getName());
+        }
+
+        String key = key(root, types, System.getProperties(), System.getenv(), config.getArgs());
+        return new ModelSnapshot(Paths.get(dir).resolve("model-" + key + ".dmr"));
+    }
+
+    ModelSnapshot(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * @return The recorded operations, or <code>null</code> if there is no usable snapshot.
+     */
+    public List<ModelNode> load() {
+        if (!Files.isRegularFile(this.file)) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(this.file))) {
+            ModelNode snapshot = ModelNode.fromStream(in);
+            if (snapshot.getType() != ModelType.LIST) {
+                throw new IOException("Not an operation list");
+            }
+            return new ArrayList<>(snapshot.asList());
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("discarding unreadable boot model snapshot " + this.file + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(this.file);
+            } catch (IOException ignored) {
+                // will be overwritten by store()
+            }
+            return null;
+        }
+    }
+
+    public void store(List<ModelNode> list) throws IOException {
+        ModelNode snapshot = new ModelNode().setEmptyList();
+        for (ModelNode each : list) {
+            snapshot.add(each);
+        }
+
+        AtomicFiles.write(this.file, (tmp) -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                snapshot.writeExternal(out);
+            }
+        });
+    }
+
+    static String key(Path root, Collection<String> types, Properties properties, Map<String, String> env, String[] args) throws IOException {
+        MessageDigest digest = Digests.create("SHA-1");
+
+        update(digest, Container.VERSION);
+
+        update(digest, root.toAbsolutePath().toString());
+        update(digest, Long.toString(Files.size(root)));
+        update(digest, Long.toString(Files.getLastModifiedTime(root).toMillis()));
+
+        for (String each : types) {
+            update(digest, each);
+        }
+
+        for (String each : new TreeSet<>(properties.stringPropertyNames())) {
+            if (!IGNORED_PROPERTIES.contains(each)) {
+                update(digest, "property:" + each + "=" + properties.getProperty(each));
+            }
+        }
+
+        for (Map.Entry<String, String> each : new TreeMap<>(env).entrySet()) {
+            update(digest, "env:" + each.getKey() + "=" + each.getValue());
+        }
+
+        if (args != null) {
+            for (String each : args) {
+                update(digest, "arg:" + each);
+            }
+        }
+
+        return Digests.hex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private final Path file;
+}
@@ -18,10 +18,19 @@ package org.wildfly.swarm.container.runtime;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ObjLongConsumer;
 
 import org.jboss.as.controller.client.ModelControllerClient;
 import org.jboss.dmr.ModelNode;
@@ -33,24 +42,35 @@ import org.jboss.vfs.TempFileProvider;
 import org.jboss.vfs.VFS;
 import org.jboss.vfs.VirtualFile;
 import org.wildfly.swarm.bootstrap.logging.BootstrapLogger;
+import org.wildfly.swarm.bootstrap.util.AtomicFiles;
+import org.wildfly.swarm.bootstrap.util.BootstrapProperties;
 import org.wildfly.swarm.SwarmProperties;
 import org.wildfly.swarm.container.Deployer;
 import org.wildfly.swarm.container.DeploymentException;
 import org.wildfly.swarm.container.Fraction;
 
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ADD;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.COMPOSITE;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.CONTENT;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.ENABLED;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.FAILURE_DESCRIPTION;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.HASH;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OP_ADDR;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.OUTCOME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.REMOVE;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.RESULT;
 import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.RUNTIME_NAME;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.STEPS;
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.SUCCESS;
 
 /**
  * @author Bob McWhirter
  */
 public class RuntimeDeployer implements Deployer {
 
+    private static final BootstrapLogger LOG = BootstrapLogger.logger("org.wildfly.swarm.runtime.deployer");
+
     private final ModelControllerClient client;
 
     private final SimpleContentProvider contentProvider;
@@ -59,7 +79,7 @@ public class RuntimeDeployer implements Deployer {
 
     private final TempFileProvider tempFileProvider;
 
-    private final List<Closeable> mountPoints = new ArrayList<>();
+    private final Map<String, byte[]> deployments = new ConcurrentHashMap<>();
 
     private boolean debug = false;
 
@@ -76,7 +96,171 @@ public class RuntimeDeployer implements Deployer {
 
     @Override
     public void deploy(Archive<?> deployment) throws DeploymentException {
+        prepareArchive(deployment);
+        final ModelNode deploymentAdd = addContent(deployment, export(deployment));
+
+        LOG.info("deploying " + deployment.getName());
+        System.setProperty(SwarmProperties.CURRENT_DEPLOYMENT, deployment.getName());
+        try {
+            ModelNode result = client.execute(deploymentAdd);
+
+            ModelNode outcome = result.get("outcome");
+            if (outcome.asString().equals("success")) {
+                this.deployments.put(deployment.getName(), hashOf(deploymentAdd));
+                signalReady();
+                return;
+            }
+
+            release(deploymentAdd);
+            ModelNode description = result.get("failure-description");
+            throw new DeploymentException(deployment, description.asString());
+        } catch (IOException e) {
+            release(deploymentAdd);
+            throw new DeploymentException(deployment, e);
+        } catch (RuntimeException e) {
+            release(deploymentAdd);
+            throw e;
+        }
+    }
+
+    /**
+     * Prepare all archives, mount them concurrently, then add them to the server through
+     * a single composite operation, so they deploy in parallel and either all succeed
+     * or none do.
+     *
+     * <p>While the batch deploys, {@link SwarmProperties#CURRENT_DEPLOYMENT} holds the
+     * comma-separated names of all its archives.</p>
+     */
+    @Override
+    public void deploy(Collection<? extends Archive<?>> deployments) throws DeploymentException {
+        deploy(deployments, (archive, nanos) -> {
+        });
+    }
+
+    /**
+     * @param prepared Notified, from any thread, of the nanoseconds spent preparing and mounting each archive.
+     */
+    void deploy(Collection<? extends Archive<?>> deployments, ObjLongConsumer<Archive<?>> prepared) throws DeploymentException {
+        if (deployments.isEmpty()) {
+            return;
+        }
+
+        List<Archive<?>> archives = new ArrayList<>(deployments);
+        List<CompletableFuture<ModelNode>> preparing = new ArrayList<>();
+
+        // fractions go through Archive.as(), whose extension loader is shared by every
+        // archive and not thread-safe, so only digesting and mounting run concurrently
+        long[] prepareNanos = new long[archives.size()];
+        File[] exported = new File[archives.size()];
+        for (int i = 0; i < archives.size(); ++i) {
+            long start = System.nanoTime();
+            prepareArchive(archives.get(i));
+            exported[i] = export(archives.get(i));
+            prepareNanos[i] = System.nanoTime() - start;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(archives.size(), Runtime.getRuntime().availableProcessors()), (r) -> {
+            Thread thread = new Thread(r, "swarm-deployer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < archives.size(); ++i) {
+                Archive<?> each = archives.get(i);
+                File zip = exported[i];
+                long prepareTime = prepareNanos[i];
+                preparing.add(CompletableFuture.supplyAsync(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        return addContent(each, zip);
+                    } catch (DeploymentException e) {
+                        throw new CompletionException(e);
+                    } finally {
+                        prepared.accept(each, prepareTime + System.nanoTime() - start);
+                    }
+                }, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // wait for every archive, so none is left holding content or a mount if another fails
+        List<ModelNode> steps = new ArrayList<>();
+        DeploymentException failure = null;
+        for (int i = 0; i < archives.size(); ++i) {
+            try {
+                steps.add(preparing.get(i).join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof DeploymentException
+                            ? (DeploymentException) e.getCause()
+                            : new DeploymentException(archives.get(i), e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            for (ModelNode each : steps) {
+                release(each);
+            }
+            throw failure;
+        }
+
+        ModelNode composite = new ModelNode();
+        composite.get(OP).set(COMPOSITE);
+        composite.get(OP_ADDR).setEmptyList();
+        for (ModelNode each : steps) {
+            composite.get(STEPS).add(each);
+        }
+
+        StringBuilder names = new StringBuilder();
+        for (Archive<?> each : archives) {
+            LOG.info("deploying " + each.getName());
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(each.getName());
+        }
+        System.setProperty(SwarmProperties.CURRENT_DEPLOYMENT, names.toString());
+
+        long start = System.currentTimeMillis();
+        ModelNode result;
+        try {
+            result = client.execute(composite);
+        } catch (IOException | RuntimeException e) {
+            for (ModelNode each : steps) {
+                release(each);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new DeploymentException(archives.get(0), e);
+        }
+        if (result.get(OUTCOME).asString().equals(SUCCESS)) {
+            LOG.info("deployed " + names + " in " + (System.currentTimeMillis() - start) + "ms");
+            for (int i = 0; i < archives.size(); ++i) {
+                this.deployments.put(archives.get(i).getName(), hashOf(steps.get(i)));
+            }
+            signalReady();
+            return;
+        }
+
+        for (ModelNode each : steps) {
+            release(each);
+        }
+
+        for (int i = 0; i < archives.size(); ++i) {
+            ModelNode step = result.get(RESULT, "step-" + (i + 1));
+            if (step.hasDefined(FAILURE_DESCRIPTION)) {
+                throw new DeploymentException(archives.get(i), step.get(FAILURE_DESCRIPTION).asString());
+            }
+        }
+        throw new DeploymentException(archives.get(0), result.get(FAILURE_DESCRIPTION).asString());
+    }
 
+    /**
+     * Let every fraction prepare an archive. Must run on the deploying thread, one archive at a time.
+     */
+    private void prepareArchive(Archive<?> deployment) {
         for (ServerConfiguration each : this.configurations) {
             each.prepareArchive(deployment);
         }
@@ -87,26 +271,46 @@ public class RuntimeDeployer implements Deployer {
                 System.err.println(each.getKey() + " // " + each.getValue());
             }
         }
+    }
 
+    /**
+     * Export a prepared archive if <code>swarm.export.deployment</code> asks for it.
+     * Must run on the deploying thread, one archive at a time.
+     *
+     * @return The exported file, or <code>null</code> if not exported.
+     */
+    private File export(Archive<?> deployment) {
         String dump = System.getProperty(SwarmProperties.EXPORT_DEPLOYMENT);
-        if (dump != null &&
-                !"false".equals(dump)) {
-            File out = new File(deployment.getName());
-            System.err.println("Dumping to " + out.getAbsolutePath());
-            deployment.as(ZipExporter.class).exportTo(out, true);
+        if (dump == null || "false".equals(dump)) {
+            return null;
         }
+        File out = new File(deployment.getName());
+        System.err.println("Dumping to " + out.getAbsolutePath());
+        deployment.as(ZipExporter.class).exportTo(out, true);
+        return out;
+    }
 
-        VirtualFile mountPoint = VFS.getRootVirtualFile().getChild(deployment.getName());
-
-        try (InputStream in = deployment.as(ZipExporter.class).exportAsInputStream()) {
-            Closeable closeable = VFS.mountZipExpanded(in, deployment.getName(), mountPoint, tempFileProvider);
-            this.mountPoints.add(closeable);
+    /**
+     * Digest a prepared archive and mount it, unless identical content is mounted already.
+     *
+     * @param exported The archive as exported by {@link #export(Archive)}, or <code>null</code>.
+     * @return The operation adding the deployment.
+     */
+    private ModelNode addContent(Archive<?> deployment, File exported) throws DeploymentException {
+        byte[] hash;
+        try {
+            String digest = ArchiveMount.digest(deployment);
+            hash = this.contentProvider.acquire(digest);
+            if (hash == null) {
+                VirtualFile mountPoint = mountPoint(digest, deployment);
+                hash = this.contentProvider.addContent(digest, mountPoint, mount(deployment, mountPoint, exported));
+            } else {
+                LOG.debug("reusing mounted content for " + deployment.getName());
+            }
         } catch (IOException e) {
             throw new DeploymentException(deployment, e);
         }
 
-        byte[] hash = this.contentProvider.addContent(mountPoint);
-
         final ModelNode deploymentAdd = new ModelNode();
 
         deploymentAdd.get(OP).set(ADD);
@@ -117,32 +321,96 @@ public class RuntimeDeployer implements Deployer {
         ModelNode content = deploymentAdd.get(CONTENT).add();
         content.get(HASH).set(hash);
 
-        BootstrapLogger.logger( "org.wildfly.swarm.runtime.deployer" )
-                .info( "deploying " + deployment.getName() );
-        System.setProperty(SwarmProperties.CURRENT_DEPLOYMENT, deployment.getName());
-        try {
-            ModelNode result = client.execute(deploymentAdd);
+        return deploymentAdd;
+    }
 
-            ModelNode outcome = result.get("outcome");
-            if (outcome.asString().equals("success")) {
-                return;
+    /**
+     * Undeploy an archive, releasing its content once no other deployment shares it.
+     *
+     * @param name The name of the deployment.
+     */
+    @Override
+    public void undeploy(String name) throws DeploymentException {
+        byte[] hash = this.deployments.get(name);
+        if (hash == null) {
+            throw new DeploymentException("Not deployed: " + name);
+        }
+
+        final ModelNode deploymentRemove = new ModelNode();
+        deploymentRemove.get(OP).set(REMOVE);
+        deploymentRemove.get(OP_ADDR).set("deployment", name);
+
+        LOG.info("undeploying " + name);
+        try {
+            ModelNode result = client.execute(deploymentRemove);
+            if (!result.get(OUTCOME).asString().equals(SUCCESS)) {
+                throw new DeploymentException(result.get(FAILURE_DESCRIPTION).asString());
             }
+            this.deployments.remove(name);
+            this.contentProvider.release(hash);
+        } catch (IOException e) {
+            throw new DeploymentException(e);
+        }
+    }
 
-            ModelNode description = result.get("failure-description");
-            throw new DeploymentException(deployment, description.asString());
+    /**
+     * Tell whoever launched this process, through the file it named, that deployments completed.
+     * The file lists the deployments and is replaced atomically, so it is never seen half-written.
+     */
+    private void signalReady() {
+        String file = System.getProperty(BootstrapProperties.READY_FILE);
+        if (file == null) {
+            return;
+        }
+        List<String> names = new ArrayList<>(this.deployments.keySet());
+        try {
+            AtomicFiles.write(Paths.get(file), (tmp) -> Files.write(tmp, names, StandardCharsets.UTF_8));
         } catch (IOException e) {
-            throw new DeploymentException(deployment, e);
+            LOG.warn("unable to signal readiness through " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Content outlives the deployment it was first mounted for while others share it,
+     * so it is mounted under its digest rather than under that deployment's name. The
+     * name is kept as the last segment, as that is what the root is known by.
+     */
+    private static VirtualFile mountPoint(String digest, Archive<?> deployment) {
+        return VFS.getRootVirtualFile().getChild("content-" + digest).getChild(deployment.getName());
+    }
+
+    private Closeable mount(Archive<?> deployment, VirtualFile mountPoint, File exported) throws IOException {
+        long start = System.currentTimeMillis();
+        ArchiveMount mount;
+        if (exported != null) {
+            mount = ArchiveMount.mountExpanded(exported, mountPoint, tempFileProvider);
+        } else {
+            mount = ArchiveMount.mountExpanded(deployment, mountPoint, tempFileProvider);
+        }
+        LOG.debug("mounted " + deployment.getName() + " in " + (System.currentTimeMillis() - start) + "ms");
+        return mount;
+    }
+
+    private static byte[] hashOf(ModelNode deploymentAdd) {
+        return deploymentAdd.get(CONTENT).get(0).get(HASH).asBytes();
+    }
+
+    private void release(ModelNode deploymentAdd) {
+        try {
+            this.contentProvider.release(hashOf(deploymentAdd));
+        } catch (IOException e) {
+            LOG.warn("unable to release content: " + e.getMessage());
         }
     }
 
     void stop() {
-        for (Closeable each : this.mountPoints) {
+        for (byte[] each : this.deployments.values()) {
             try {
-                each.close();
+                this.contentProvider.release(each);
             } catch (IOException e) {
             }
         }
-
+        this.deployments.clear();
     }
 
 }
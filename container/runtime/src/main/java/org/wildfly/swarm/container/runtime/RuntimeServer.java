@@ -26,15 +26,22 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.logging.LogManager;
 
 import org.jboss.as.controller.ModelController;
@@ -57,6 +64,7 @@ import org.jboss.msc.service.ServiceActivator;
 import org.jboss.msc.service.ServiceContainer;
 import org.jboss.msc.service.ServiceController;
 import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.ServiceTarget;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.ValueService;
 import org.jboss.msc.value.ImmediateValue;
@@ -139,23 +147,50 @@ public class RuntimeServer implements Server {
     @Override
     public Deployer start(Container config) throws Exception {
 
+        StartupProfiler profiler = new StartupProfiler();
+
         UUID uuid = UUIDFactory.getUUID();
         System.setProperty("jboss.server.management.uuid", uuid.toString());
 
-        loadFractionConfigurations();
+        try (StartupProfiler.Timer phase = profiler.phase("load-fraction-configurations")) {
+            loadFractionConfigurations(profiler);
+        }
 
-        applyDefaults(config);
+        try (StartupProfiler.Timer phase = profiler.phase("apply-fraction-defaults")) {
+            applyDefaults(config);
+        }
 
-        for (Fraction fraction : config.fractions()) {
-            fraction.postInitialize(config.createPostInitContext());
+        try (StartupProfiler.Timer phase = profiler.phase("post-initialize")) {
+            for (Fraction fraction : config.fractions()) {
+                try (StartupProfiler.Timer timer = profiler.fraction("post-initialize", fraction.simpleName())) {
+                    fraction.postInitialize(config.createPostInitContext());
+                }
+            }
         }
 
         applySocketBindingGroupDefaults(config);
 
-        List<ModelNode> list = getList(config);
+        List<ModelNode> list = null;
+        try (StartupProfiler.Timer phase = profiler.phase("model-generation")) {
+            ModelSnapshot snapshot = ModelSnapshot.forContainer(config, this.configList);
+            if (snapshot != null) {
+                list = snapshot.load();
+                if (list != null && LOG.isDebugEnabled()) {
+                    LOG.debug("replaying boot model from " + snapshot.getFile());
+                }
+            }
+
+            if (list == null) {
+                list = getList(config, profiler);
 
-        // float all <extension> up to the head of the list
-        list.sort(new ExtensionOpPriorityComparator());
+                // float all <extension> up to the head of the list
+                list.sort(new ExtensionOpPriorityComparator());
+
+                if (snapshot != null) {
+                    snapshot.store(list);
+                }
+            }
+        }
 
 
         if (LOG.isDebugEnabled()) {
@@ -173,6 +208,12 @@ public class RuntimeServer implements Server {
         TempFileProvider tempFileProvider = TempFileProvider.create("wildfly-swarm", tempFileExecutor);
         List<ServiceActivator> activators = new ArrayList<>();
         activators.add(context -> {
+            if (profiler.isEnabled()) {
+                // listeners on the container itself see every service installed from here on
+                ServiceTarget target = context.getServiceRegistry() instanceof ServiceTarget
+                        ? (ServiceTarget) context.getServiceRegistry() : context.getServiceTarget();
+                target.addListener(profiler.serviceListener());
+            }
             context.getServiceTarget().addService(ServiceName.of("wildfly", "swarm", "temp-provider"), new ValueService<>(new ImmediateValue<>(tempFileProvider)))
                     .install();
             // Provide the main command line args as a value service
@@ -185,7 +226,9 @@ public class RuntimeServer implements Server {
             for (Fraction eachFraction : config.fractions()) {
                 if (eachConfig.getType().isAssignableFrom(eachFraction.getClass())) {
                     found = true;
-                    activators.addAll(eachConfig.getServiceActivators(eachFraction));
+                    try (StartupProfiler.Timer timer = profiler.fraction("service-activators", eachFraction.simpleName())) {
+                        activators.addAll(eachConfig.getServiceActivators(eachFraction));
+                    }
                     break;
                 }
             }
@@ -195,7 +238,9 @@ public class RuntimeServer implements Server {
         }
 
 
-        this.serviceContainer = this.container.start(list, this.contentProvider, activators);
+        try (StartupProfiler.Timer phase = profiler.phase("container-start")) {
+            this.serviceContainer = this.container.start(list, this.contentProvider, activators);
+        }
         for (ServiceName serviceName : this.serviceContainer.getServiceNames()) {
             ServiceController<?> serviceController = this.serviceContainer.getService(serviceName);
             StartException exception = serviceController.getStartException();
@@ -210,21 +255,29 @@ public class RuntimeServer implements Server {
         this.deployer = new RuntimeDeployer(this.configList, this.client, this.contentProvider, tempFileProvider);
         this.deployer.debug(this.debug);
 
-        List<Archive> implicitDeployments = new ArrayList<>();
+        try (StartupProfiler.Timer phase = profiler.phase("implicit-deployments")) {
+            Map<Archive<?>, String> implicitDeployments = new LinkedHashMap<>();
 
-        for (ServerConfiguration<Fraction> eachConfig : this.configList) {
-            for (Fraction eachFraction : config.fractions()) {
-                if (eachConfig.getType().isAssignableFrom(eachFraction.getClass())) {
-                    implicitDeployments.addAll(eachConfig.getImplicitDeployments(eachFraction));
-                    break;
+            for (ServerConfiguration<Fraction> eachConfig : this.configList) {
+                for (Fraction eachFraction : config.fractions()) {
+                    if (eachConfig.getType().isAssignableFrom(eachFraction.getClass())) {
+                        try (StartupProfiler.Timer timer = profiler.fraction("get-implicit-deployments", eachFraction.simpleName())) {
+                            for (Archive each : eachConfig.getImplicitDeployments(eachFraction)) {
+                                implicitDeployments.put(each, eachFraction.simpleName());
+                            }
+                        }
+                        break;
+                    }
                 }
             }
-        }
 
-        for (Archive each : implicitDeployments) {
-            this.deployer.deploy(each);
+            // the batch deploys as one operation, so only preparation is attributable to a fraction
+            this.deployer.deploy(implicitDeployments.keySet(),
+                                 (archive, nanos) -> profiler.record("prepare " + archive.getName(), implicitDeployments.get(archive), nanos));
         }
 
+        profiler.complete();
+
         return this.deployer;
     }
 
@@ -327,7 +380,14 @@ public class RuntimeServer implements Server {
     }
 
     @SuppressWarnings("unchecked")
-    private void loadFractionConfigurations() throws Exception {
+    private void loadFractionConfigurations(StartupProfiler profiler) throws Exception {
+        long start = System.currentTimeMillis();
+        AtomicInteger scanned = new AtomicInteger();
+        // swarm.fraction.index=false forces scanning, to compare boot profiles with and without the index
+        boolean useIndex = Boolean.parseBoolean(System.getProperty(SwarmProperties.FRACTION_INDEX, "true"));
+        Map<String, Long> indexedNanos = new ConcurrentHashMap<>();
+        Map<String, Long> scannedNanos = new ConcurrentHashMap<>();
+
         Module m1 = Module.getBootModuleLoader().loadModule(ModuleIdentifier.create("swarm.application"));
 
         Enumeration<URL> bootstraps = m1.getClassLoader().getResources("wildfly-swarm-bootstrap.conf");
@@ -335,6 +395,8 @@ public class RuntimeServer implements Server {
             bootstraps = ClassLoader.getSystemClassLoader().getResources("wildfly-swarm-bootstrap.conf");
         }
 
+        List<String> fractionModules = new ArrayList<>();
+
         while (bootstraps.hasMoreElements()) {
             URL each = bootstraps.nextElement();
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(each.openStream()))) {
@@ -344,21 +406,152 @@ public class RuntimeServer implements Server {
                     if (line.isEmpty()) {
                         continue;
                     }
-                    Module module = Module.getBootModuleLoader().loadModule(ModuleIdentifier.create(line, "runtime"));
+                    fractionModules.add(line);
+                }
+            }
+        }
 
-                    List<Class<? extends ServerConfiguration>> serverConfigs = findServerConfigurationImpls(module);
+        Function<String, List<Class<? extends ServerConfiguration>>> finder = (name) -> {
+            try {
+                Module module = Module.getBootModuleLoader().loadModule(ModuleIdentifier.create(name, "runtime"));
+                long moduleStart = System.nanoTime();
+                List<Class<? extends ServerConfiguration>> serverConfigs = useIndex ? findIndexedServerConfigurationImpls(module) : null;
+                if (serverConfigs != null) {
+                    indexedNanos.put(name, System.nanoTime() - moduleStart);
+                } else {
+                    serverConfigs = findServerConfigurationImpls(module);
+                    scanned.incrementAndGet();
+                    scannedNanos.put(name, System.nanoTime() - moduleStart);
+                }
+                return serverConfigs;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
 
-                    for (Class<? extends ServerConfiguration> cls : serverConfigs) {
-                        if (! this.configList.stream().anyMatch((e) -> e.getClass().equals(cls))) {
-                            ServerConfiguration serverConfig = (ServerConfiguration) cls.newInstance();
-                            this.configByFractionType.put(serverConfig.getType(), serverConfig);
-                            this.configList.add(serverConfig);
+        // results are collected in bootstrap.conf order, whether or not they were found in parallel
+        List<List<Class<? extends ServerConfiguration>>> found;
+        int parallelism = Integer.getInteger(SwarmProperties.FRACTION_PARALLELISM, 1);
 
-                        }
+        if (parallelism > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                found = pool.submit(() -> fractionModules.parallelStream().map(finder).collect(Collectors.toList())).get();
+            } catch (ExecutionException e) {
+                throw unwrapFinderException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            try {
+                found = fractionModules.stream().map(finder).collect(Collectors.toList());
+            } catch (RuntimeException e) {
+                throw unwrapFinderException(e);
+            }
+        }
+
+        for (List<Class<? extends ServerConfiguration>> serverConfigs : found) {
+            for (Class<? extends ServerConfiguration> cls : serverConfigs) {
+                if (! this.configList.stream().anyMatch((e) -> e.getClass().equals(cls))) {
+                    ServerConfiguration serverConfig = (ServerConfiguration) cls.newInstance();
+                    this.configByFractionType.put(serverConfig.getType(), serverConfig);
+                    this.configList.add(serverConfig);
+
+                }
+            }
+        }
+
+        if (profiler.isEnabled()) {
+            for (int i = 0; i < fractionModules.size(); ++i) {
+                String module = fractionModules.get(i);
+                String phase = indexedNanos.containsKey(module) ? "configurations-indexed" : "configurations-scanned";
+                long nanos = indexedNanos.containsKey(module) ? indexedNanos.get(module) : scannedNanos.get(module);
+                // keyed like every other record; a module without configurations has no fraction to file it under
+                List<String> fractions = found.get(i).stream().map(this::simpleName).distinct().collect(Collectors.toList());
+                if (fractions.isEmpty()) {
+                    fractions.add(module);
+                }
+                for (String each : fractions) {
+                    profiler.record(phase, each, nanos);
+                }
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("loaded fraction configurations in " + (System.currentTimeMillis() - start) + "ms ("
+                              + (fractionModules.size() - scanned.get()) + " indexed in "
+                              + TimeUnit.NANOSECONDS.toMillis(sum(indexedNanos)) + "ms, "
+                              + scanned.get() + " scanned in "
+                              + TimeUnit.NANOSECONDS.toMillis(sum(scannedNanos)) + "ms, "
+                              + "parallelism " + parallelism + ")");
+        }
+    }
+
+    /**
+     * Recover the checked exception the configuration finder had to wrap, whichever path it ran on.
+     */
+    private static Exception unwrapFinderException(Throwable t) {
+        if (t instanceof RuntimeException && t.getCause() instanceof Exception) {
+            return (Exception) t.getCause();
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof Exception) {
+            return (Exception) t;
+        }
+        return new Exception(t);
+    }
+
+    /**
+     * @return The name of the fraction a loaded configuration handles, as {@link Fraction#simpleName()} gives it.
+     */
+    private String simpleName(Class<? extends ServerConfiguration> cls) {
+        for (ServerConfiguration<Fraction> each : this.configList) {
+            if (each.getClass().equals(cls)) {
+                String name = each.getType().getSimpleName();
+                return name.endsWith("Fraction") ? name.substring(0, name.length() - "Fraction".length()) : name;
+            }
+        }
+        return cls.getSimpleName();
+    }
+
+    private static long sum(Map<String, Long> nanos) {
+        return nanos.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Locate configurations through the module's build-time {@link ServerConfigurationIndexer#INDEX}.
+     *
+     * @return The configurations, or <code>null</code> if the module carries no index.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<Class<? extends ServerConfiguration>> findIndexedServerConfigurationImpls(Module module) throws IOException {
+        List<Resource> indexes = module.getClassLoader().loadResourceLocal(ServerConfigurationIndexer.INDEX);
+        if (indexes.isEmpty()) {
+            return null;
+        }
+
+        List<Class<? extends ServerConfiguration>> impls = new ArrayList<>();
+
+        for (Resource index : indexes) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        impls.add((Class<? extends ServerConfiguration>) module.getClassLoader().loadClass(line));
+                    } catch (ClassNotFoundException e) {
+                        LOG.error("unable to load indexed configuration " + line + " from " + module.getIdentifier(), e);
                     }
                 }
             }
         }
+
+        return impls;
     }
 
     protected List<Class<? extends ServerConfiguration>> findServerConfigurationImpls(Module module) throws ModuleLoadException, IOException, NoSuchFieldException, IllegalAccessException {
@@ -407,13 +600,13 @@ public class RuntimeServer implements Server {
         //return found;
     }
 
-    private List<ModelNode> getList(Container config) throws Exception {
+    private List<ModelNode> getList(Container config, StartupProfiler profiler) throws Exception {
         List<ModelNode> list = new ArrayList<>();
 
         configureInterfaces(config, list);
         configureSocketBindingGroups(config, list);
 
-        configureFractions(config, list);
+        configureFractions(config, list, profiler);
 
         return list;
     }
@@ -501,13 +694,15 @@ public class RuntimeServer implements Server {
         list.add(node);
     }
 
-    private void configureFractions(Container config, List<ModelNode> list) throws Exception {
+    private void configureFractions(Container config, List<ModelNode> list, StartupProfiler profiler) throws Exception {
         for (ServerConfiguration<Fraction> eachConfig : this.configList) {
             boolean found = false;
             for (Fraction eachFraction : config.fractions()) {
                 if (eachConfig.getType().isAssignableFrom(eachFraction.getClass())) {
                     found = true;
-                    list.addAll(eachConfig.getList(eachFraction));
+                    try (StartupProfiler.Timer timer = profiler.fraction("get-list", eachFraction.simpleName())) {
+                        list.addAll(eachConfig.getList(eachFraction));
+                    }
                     break;
                 }
             }
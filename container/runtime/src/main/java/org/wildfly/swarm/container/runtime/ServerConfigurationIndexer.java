@@ -0,0 +1,129 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Build-time annotation processor recording every concrete {@link ServerConfiguration}
+ * of a runtime module in {@link #INDEX}, so the boot does not have to scan the module.
+ *
+ * <p>Registered as a service of this jar, it runs automatically when any fraction's
+ * runtime module is compiled against <code>container-runtime</code>. The index is
+ * only written by compilations that contain configurations, so other code compiled
+ * against <code>container-runtime</code>, tests included, is left without one.</p>
+ *
+ * @author Bob McWhirter
+ */
+@SupportedAnnotationTypes("*")
+public class ServerConfigurationIndexer extends AbstractProcessor {
+
+    public static final String INDEX = "META-INF/wildfly-swarm-configurations.idx";
+
+    private final Set<String> configurations = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement serverConfiguration = this.processingEnv.getElementUtils().getTypeElement(ServerConfiguration.class.getName());
+        if (serverConfiguration == null) {
+            return false;
+        }
+        TypeMirror serverConfigurationType = this.processingEnv.getTypeUtils().erasure(serverConfiguration.asType());
+
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        for (Element each : roundEnv.getRootElements()) {
+            collect(each, serverConfigurationType);
+        }
+        return false;
+    }
+
+    private void collect(Element element, TypeMirror serverConfigurationType) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if (!type.getModifiers().contains(Modifier.ABSTRACT)
+                && this.processingEnv.getTypeUtils().isAssignable(type.asType(), serverConfigurationType)) {
+            this.configurations.add(this.processingEnv.getElementUtils().getBinaryName(type).toString());
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed.getModifiers().contains(Modifier.STATIC)) {
+                collect(enclosed, serverConfigurationType);
+            }
+        }
+    }
+
+    private void writeIndex() {
+        // keep entries from a previous, partial compilation whose classes still exist
+        try {
+            FileObject existing = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && this.processingEnv.getElementUtils().getTypeElement(line.replace('$', '.')) != null) {
+                        this.configurations.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no previous index
+        }
+
+        if (this.configurations.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject index = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (PrintWriter writer = new PrintWriter(index.openWriter())) {
+                for (String each : this.configurations) {
+                    writer.println(each);
+                }
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + INDEX + ": " + e.getMessage());
+        }
+    }
+}
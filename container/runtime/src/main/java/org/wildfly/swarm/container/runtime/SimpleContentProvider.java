@@ -15,37 +15,147 @@
  */
 package org.wildfly.swarm.container.runtime;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.jboss.as.selfcontained.ContentProvider;
 import org.jboss.vfs.VirtualFile;
 
 /**
+ * Content-addressed store of mounted deployment content.
+ *
+ * <p>Content is keyed by a digest of what was deployed, so adding identical content
+ * again shares the existing mount instead of creating another one, and each mount is
+ * reference counted and closed once its last user releases it.</p>
+ *
+ * <p>The self-contained content repository can only resolve single-byte hashes, so
+ * the hash handed to the management model is a slot referring to the digest. Slots
+ * are recycled on release, which bounds the number of distinct contents deployed at
+ * the same time, not the number of deployments over the life of the server.</p>
+ *
  * @author Bob McWhirter
  */
 public class SimpleContentProvider implements ContentProvider {
 
-    private List<VirtualFile> contents = new ArrayList<>();
-
+    private static final int MAX_SLOTS = 256;
 
     public SimpleContentProvider() {
 
     }
 
-    public synchronized byte[] addContent(VirtualFile content) {
-        this.contents.add(content);
-        byte[] hash = new byte[1];
-        hash[0] = (byte) (this.contents.size() - 1);
-        return hash;
+    /**
+     * Reference content already in the store.
+     *
+     * @param digest The digest of the content.
+     * @return The hash to deploy the content with, or <code>null</code> if no such content is present.
+     */
+    public synchronized byte[] acquire(String digest) {
+        Content content = this.contents.get(digest);
+        if (content == null) {
+            return null;
+        }
+        ++content.references;
+        return hash(content.slot);
+    }
+
+    /**
+     * Add content to the store, taking ownership of its mount.
+     *
+     * <p>If content with the same digest was added in the meantime, that content is
+     * referenced instead and <code>mount</code> is closed.</p>
+     *
+     * @param digest The digest of the content.
+     * @param root The root of the mounted content.
+     * @param mount The mount to close once the content is no longer referenced.
+     * @return The hash to deploy the content with.
+     */
+    public synchronized byte[] addContent(String digest, VirtualFile root, Closeable mount) throws IOException {
+        byte[] existing = acquire(digest);
+        if (existing != null) {
+            mount.close();
+            return existing;
+        }
+        int slot = freeSlot();
+        if (slot < 0) {
+            mount.close();
+            throw new IOException("Too many distinct deployments, at most " + MAX_SLOTS + " may be deployed at the same time");
+        }
+        Content content = new Content(digest, slot, root, mount);
+        this.contents.put(digest, content);
+        this.slots[slot] = content;
+        return hash(slot);
+    }
+
+    /**
+     * Drop a reference to content, closing its mount if it was the last one.
+     *
+     * @param hash The hash returned when the content was added or acquired.
+     */
+    public void release(byte[] hash) throws IOException {
+        Closeable mount = null;
+        synchronized (this) {
+            int slot = hash[0] & 0xFF;
+            Content content = this.slots[slot];
+            if (content == null) {
+                return;
+            }
+            if (--content.references == 0) {
+                this.slots[slot] = null;
+                this.contents.remove(content.digest);
+                mount = content.mount;
+            }
+        }
+        if (mount != null) {
+            mount.close();
+        }
     }
 
     @Override
-    public VirtualFile getContent(int index) {
-        if (index >= this.contents.size()) {
+    public synchronized VirtualFile getContent(int index) {
+        // the repository hands over the hash byte sign-extended
+        Content content = this.slots[index & 0xFF];
+        if (content == null) {
             return null;
         }
 
-        return this.contents.get(index);
+        return content.root;
     }
+
+    private int freeSlot() {
+        for (int i = 0; i < MAX_SLOTS; ++i) {
+            if (this.slots[i] == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] hash(int slot) {
+        return new byte[]{(byte) slot};
+    }
+
+    private static class Content {
+        Content(String digest, int slot, VirtualFile root, Closeable mount) {
+            this.digest = digest;
+            this.slot = slot;
+            this.root = root;
+            this.mount = mount;
+        }
+
+        private final String digest;
+
+        private final int slot;
+
+        private final VirtualFile root;
+
+        private final Closeable mount;
+
+        private int references = 1;
+    }
+
+    private final Map<String, Content> contents = new HashMap<>();
+
+    private final Content[] slots = new Content[MAX_SLOTS];
 }
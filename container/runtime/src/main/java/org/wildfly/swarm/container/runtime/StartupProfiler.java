@@ -0,0 +1,226 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.msc.service.AbstractServiceListener;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceListener;
+import org.jboss.msc.service.ServiceName;
+import org.wildfly.swarm.SwarmProperties;
+
+/**
+ * Records where boot time goes, per phase, per fraction and per MSC service.
+ *
+ * <p>Enabled through <code>swarm.boot.profile</code>: <code>true</code> prints the
+ * JSON report to stdout once the boot completes, <code>false</code> or an empty
+ * value leaves profiling off, any other value names the file to write it to.
+ * Allocation is measured on the booting thread only, and only on JVMs
+ * supporting per-thread allocation counters; MSC services are timed by
+ * wall-clock between starting and up.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class StartupProfiler {
+
+    private static final Timer NOOP = new Timer(null, null, null);
+
+    public StartupProfiler() {
+        this(System.getProperty(SwarmProperties.BOOT_PROFILE));
+    }
+
+    StartupProfiler(String target) {
+        this.target = target(target);
+        this.total = phase("total");
+    }
+
+    public boolean isEnabled() {
+        return this.target != null;
+    }
+
+    public Timer phase(String name) {
+        if (!isEnabled()) {
+            return NOOP;
+        }
+        return new Timer(this, name, this.phases);
+    }
+
+    public Timer fraction(String phase, String fraction) {
+        if (!isEnabled()) {
+            return NOOP;
+        }
+        List<ModelNode> records = this.fractions.computeIfAbsent(fraction, (k) -> new ArrayList<>());
+        return new Timer(this, phase, records);
+    }
+
+    /**
+     * Record a duration measured elsewhere, e.g. on a worker thread, against a fraction.
+     */
+    public synchronized void record(String phase, String fraction, long nanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        ModelNode record = new ModelNode();
+        record.get("name").set(phase);
+        record.get("wall-ms").set(TimeUnit.NANOSECONDS.toMillis(nanos));
+        this.fractions.computeIfAbsent(fraction, (k) -> new ArrayList<>()).add(record);
+    }
+
+    public ServiceListener<Object> serviceListener() {
+        return new AbstractServiceListener<Object>() {
+            @Override
+            public void transition(ServiceController<?> controller, ServiceController.Transition transition) {
+                switch (transition) {
+                    case START_INITIATING_to_STARTING:
+                        serviceStarts.put(controller.getName(), System.nanoTime());
+                        break;
+                    case STARTING_to_UP:
+                    case STARTING_to_START_FAILED:
+                        Long started = serviceStarts.remove(controller.getName());
+                        if (started != null) {
+                            serviceTimes.put(controller.getName(), System.nanoTime() - started);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        };
+    }
+
+    /**
+     * Close the overall boot timer and emit the report, if enabled.
+     */
+    public void complete() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        this.total.close();
+
+        ModelNode report = new ModelNode();
+        report.get("total").set(this.phases.remove(this.phases.size() - 1));
+        report.get("phases").setEmptyList();
+        for (ModelNode each : this.phases) {
+            report.get("phases").add(each);
+        }
+        report.get("fractions").setEmptyObject();
+        for (Map.Entry<String, List<ModelNode>> each : this.fractions.entrySet()) {
+            ModelNode fraction = report.get("fractions", each.getKey()).setEmptyList();
+            for (ModelNode record : each.getValue()) {
+                fraction.add(record);
+            }
+        }
+        report.get("services").setEmptyList();
+        this.serviceTimes.entrySet().stream()
+                .sorted((l, r) -> Long.compare(r.getValue(), l.getValue()))
+                .forEach((e) -> {
+                    ModelNode service = new ModelNode();
+                    service.get("name").set(e.getKey().getCanonicalName());
+                    service.get("wall-ms").set(TimeUnit.NANOSECONDS.toMillis(e.getValue()));
+                    report.get("services").add(service);
+                });
+
+        String json = report.toJSONString(false);
+        if (this.target.equalsIgnoreCase("true")) {
+            System.out.println(json);
+        } else {
+            Files.write(Paths.get(this.target), json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return Where to send the report, or <code>null</code> if profiling is off.
+     */
+    static String target(String property) {
+        if (property == null) {
+            return null;
+        }
+        property = property.trim();
+        if (property.isEmpty() || property.equalsIgnoreCase("false")) {
+            return null;
+        }
+        return property;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    public static class Timer implements AutoCloseable {
+
+        Timer(StartupProfiler profiler, String name, List<ModelNode> records) {
+            this.name = name;
+            this.records = records;
+            this.start = System.nanoTime();
+            this.startAllocated = profiler == null ? -1 : allocatedBytes();
+        }
+
+        @Override
+        public void close() {
+            if (this.records == null) {
+                return;
+            }
+            ModelNode record = new ModelNode();
+            record.get("name").set(this.name);
+            record.get("wall-ms").set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.start));
+            long allocated = allocatedBytes();
+            if (this.startAllocated >= 0 && allocated >= 0) {
+                record.get("allocated-bytes").set(allocated - this.startAllocated);
+            }
+            this.records.add(record);
+        }
+
+        private final String name;
+
+        private final List<ModelNode> records;
+
+        private final long start;
+
+        private final long startAllocated;
+    }
+
+    private final String target;
+
+    private final List<ModelNode> phases = new ArrayList<>();
+
+    private final Map<String, List<ModelNode>> fractions = new TreeMap<>();
+
+    private final Map<ServiceName, Long> serviceStarts = new ConcurrentHashMap<>();
+
+    private final Map<ServiceName, Long> serviceTimes = new ConcurrentHashMap<>();
+
+    private final Timer total;
+}
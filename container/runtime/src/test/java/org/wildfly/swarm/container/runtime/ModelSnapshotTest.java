@@ -0,0 +1,119 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.swarm.bootstrap.util.BootstrapProperties;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class ModelSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File jar;
+
+    private List<String> types;
+
+    private Properties properties;
+
+    private Map<String, String> env;
+
+    private String[] args;
+
+    @Before
+    public void setUp() throws Exception {
+        this.jar = tmp.newFile("app-swarm.jar");
+        Files.write(this.jar.toPath(), new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(this.jar.toPath(), FileTime.fromMillis(1000000L));
+        this.types = Arrays.asList("fraction:org.wildfly.swarm.undertow.UndertowFraction");
+        this.properties = new Properties();
+        this.properties.setProperty("swarm.http.port", "8080");
+        this.properties.setProperty("java.net.preferIPv4Stack", "true");
+        this.env = new HashMap<>();
+        this.env.put("DB_HOST", "db");
+        this.args = new String[]{"-Sprod"};
+    }
+
+    private String key() throws Exception {
+        return ModelSnapshot.key(this.jar.toPath(), this.types, this.properties, this.env, this.args);
+    }
+
+    @Test
+    public void testStable() throws Exception {
+        String key = key();
+        this.properties.setProperty("jboss.server.management.uuid", "ignored");
+        assertThat(key()).isEqualTo(key);
+    }
+
+    @Test
+    public void testPerLaunchPropertiesIgnored() throws Exception {
+        String key = key();
+        this.properties.setProperty(BootstrapProperties.READY_FILE, "/tmp/swarm-ready-1.tmp");
+        assertThat(key()).isEqualTo(key);
+        this.properties.setProperty(BootstrapProperties.READY_FILE, "/tmp/swarm-ready-2.tmp");
+        assertThat(key()).isEqualTo(key);
+    }
+
+    @Test
+    public void testApplicationChanges() throws Exception {
+        String key = key();
+        Files.write(this.jar.toPath(), new byte[]{1, 2, 3, 4});
+        Files.setLastModifiedTime(this.jar.toPath(), FileTime.fromMillis(1000000L));
+        assertThat(key()).isNotEqualTo(key);
+
+        key = key();
+        Files.setLastModifiedTime(this.jar.toPath(), FileTime.fromMillis(2000000L));
+        assertThat(key()).isNotEqualTo(key);
+    }
+
+    @Test
+    public void testInputsChange() throws Exception {
+        String key = key();
+
+        this.properties.setProperty("java.net.preferIPv4Stack", "false");
+        String afterProperty = key();
+        assertThat(afterProperty).isNotEqualTo(key);
+
+        this.env.put("DB_HOST", "other");
+        String afterEnv = key();
+        assertThat(afterEnv).isNotEqualTo(afterProperty);
+
+        this.args = new String[]{"-Sdev"};
+        String afterArgs = key();
+        assertThat(afterArgs).isNotEqualTo(afterEnv);
+
+        this.types = Collections.emptyList();
+        assertThat(key()).isNotEqualTo(afterArgs);
+    }
+}
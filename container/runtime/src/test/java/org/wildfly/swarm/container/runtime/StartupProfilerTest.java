@@ -0,0 +1,92 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.container.runtime;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class StartupProfilerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testTarget() {
+        assertThat(StartupProfiler.target(null)).isNull();
+        assertThat(StartupProfiler.target("")).isNull();
+        assertThat(StartupProfiler.target("false")).isNull();
+        assertThat(StartupProfiler.target("FALSE")).isNull();
+        assertThat(StartupProfiler.target("true")).isEqualTo("true");
+        assertThat(StartupProfiler.target("/tmp/boot.json")).isEqualTo("/tmp/boot.json");
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        StartupProfiler profiler = new StartupProfiler("false");
+        assertThat(profiler.isEnabled()).isFalse();
+
+        try (StartupProfiler.Timer phase = profiler.phase("ignored")) {
+            profiler.record("ignored", "fraction", 1);
+        }
+        profiler.complete();
+
+        assertThat(new File("false").exists()).isFalse();
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        File report = new File(tmp.getRoot(), "boot.json");
+        StartupProfiler profiler = new StartupProfiler(report.getAbsolutePath());
+        assertThat(profiler.isEnabled()).isTrue();
+
+        try (StartupProfiler.Timer phase = profiler.phase("post-initialize")) {
+            try (StartupProfiler.Timer timer = profiler.fraction("post-initialize", "undertow")) {
+                // nothing
+            }
+        }
+        profiler.record("configurations-indexed", "undertow", TimeUnit.MILLISECONDS.toNanos(3));
+        profiler.complete();
+
+        ModelNode json = ModelNode.fromJSONString(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8));
+
+        assertThat(json.get("total", "name").asString()).isEqualTo("total");
+        assertThat(json.get("total").has("wall-ms")).isTrue();
+
+        assertThat(json.get("phases").asList()).hasSize(1);
+        assertThat(json.get("phases").get(0).get("name").asString()).isEqualTo("post-initialize");
+
+        ModelNode undertow = json.get("fractions", "undertow");
+        assertThat(undertow.asList()).hasSize(2);
+        assertThat(undertow.get(0).get("name").asString()).isEqualTo("post-initialize");
+        assertThat(undertow.get(1).get("name").asString()).isEqualTo("configurations-indexed");
+        assertThat(undertow.get(1).get("wall-ms").asLong()).isEqualTo(3);
+
+        assertThat(json.get("services").getType()).isEqualTo(ModelType.LIST);
+    }
+}
@@ -28,8 +28,11 @@ import org.gradle.api.plugins.ExtensionContainer;
 import org.gradle.api.plugins.ExtraPropertiesExtension;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.bundling.Jar;
+import org.wildfly.swarm.bootstrap.util.DependencyLayer;
 import org.wildfly.swarm.tools.BuildTool;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.util.Set;
 
 /**
@@ -81,7 +84,33 @@ public class PackageTask extends DefaultTask {
             this.tool.bundleDependencies(bundleDependencies);
         }
 
-        this.tool.build(project.getName(), project.getBuildDir().toPath().resolve( "libs" ));
+        Boolean incremental = ext.getIncremental();
+        if(incremental != null) {
+            this.tool.incremental(incremental);
+        }
+
+        Boolean storeNestedJars = ext.getStoreNestedJars();
+        if(storeNestedJars != null) {
+            this.tool.storeNestedJars(storeNestedJars);
+        }
+
+        Integer compressionThreads = ext.getCompressionThreads();
+        if(compressionThreads != null) {
+            this.tool.compressionThreads(compressionThreads);
+        }
+
+        Path libs = project.getBuildDir().toPath().resolve( "libs" );
+
+        Boolean thin = ext.getThin();
+        if(thin != null && thin) {
+            this.tool.dependencyLayer(libs.resolve(DependencyLayer.DEFAULT_DIRECTORY));
+        }
+
+        this.tool.analysisCache(new File(project.getBuildDir(), "wildfly-swarm-analysis.properties"));
+
+        this.tool.log(getLogger()::lifecycle);
+
+        this.tool.build(project.getName(), libs);
     }
 
     private void walk(ResolvedDependency dep) {
@@ -26,6 +26,10 @@ import java.util.Properties;
 public class SwarmExtension {
     private String mainClass;
     private Boolean bundleDependencies;
+    private Boolean incremental;
+    private Boolean storeNestedJars;
+    private Integer compressionThreads;
+    private Boolean thin;
 
     private Properties properties = new Properties();
 
@@ -60,4 +64,36 @@ public class SwarmExtension {
     public void setBundleDependencies(Boolean bundleDependencies) {
         this.bundleDependencies = bundleDependencies;
     }
+
+    public Boolean getIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(Boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public Boolean getStoreNestedJars() {
+        return storeNestedJars;
+    }
+
+    public void setStoreNestedJars(Boolean storeNestedJars) {
+        this.storeNestedJars = storeNestedJars;
+    }
+
+    public Integer getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public void setCompressionThreads(Integer compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    public Boolean getThin() {
+        return thin;
+    }
+
+    public void setThin(Boolean thin) {
+        this.thin = thin;
+    }
 }
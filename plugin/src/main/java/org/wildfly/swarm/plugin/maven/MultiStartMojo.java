@@ -169,6 +169,9 @@ public class MultiStartMojo extends AbstractSwarmMojo {
         try {
             SwarmProcess launched = executor.execute();
             launched.awaitDeploy( 30, TimeUnit.SECONDS );
+            if ( !launched.isReady() ) {
+                getLog().warn( "Deployments of " + artifact + " did not complete within 30 seconds" );
+            }
             procs.add(launched);
         } catch (IOException | InterruptedException e) {
             throw new MojoFailureException("Unable to execute: " + artifact, e);
@@ -27,6 +27,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.eclipse.aether.impl.ArtifactResolver;
+import org.wildfly.swarm.bootstrap.util.DependencyLayer;
 import org.wildfly.swarm.tools.BuildTool;
 
 import javax.inject.Inject;
@@ -53,6 +54,18 @@ public class PackageMojo extends AbstractSwarmMojo {
     @Parameter(alias = "bundleDependencies", defaultValue = "true")
     protected boolean bundleDependencies;
 
+    @Parameter(alias = "incremental", defaultValue = "false")
+    protected boolean incremental;
+
+    @Parameter(alias = "storeNestedJars", defaultValue = "false")
+    protected boolean storeNestedJars;
+
+    @Parameter(alias = "compressionThreads", defaultValue = "1")
+    protected int compressionThreads;
+
+    @Parameter(alias = "thin", defaultValue = "false")
+    protected boolean thin;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         initProperties(false);
@@ -87,7 +100,16 @@ public class PackageMojo extends AbstractSwarmMojo {
         tool
                 .properties(this.properties)
                 .mainClass(this.mainClass)
-                .bundleDependencies(this.bundleDependencies);
+                .bundleDependencies(this.bundleDependencies)
+                .incremental(this.incremental)
+                .storeNestedJars(this.storeNestedJars)
+                .compressionThreads(this.compressionThreads)
+                .analysisCache(new File(this.projectBuildDir, "wildfly-swarm-analysis.properties"))
+                .log(getLog()::info);
+
+        if (this.thin) {
+            tool.dependencyLayer(Paths.get(this.projectBuildDir, DependencyLayer.DEFAULT_DIRECTORY));
+        }
 
         MavenArtifactResolvingHelper resolvingHelper = new MavenArtifactResolvingHelper(this.resolver, this.repositorySystemSession);
         this.remoteRepositories.forEach(resolvingHelper::remoteRepository);
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.ribbon.webapp.runtime;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps every open topology stream alive from a single thread.
+ *
+ * @author Bob McWhirter
+ */
+class Heartbeat {
+
+    Heartbeat(long interval, TimeUnit unit) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread thread = new Thread(r, "ribbon-sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::beat, interval, interval, unit);
+    }
+
+    void add(TopologySubscriber subscriber) {
+        this.subscribers.add(subscriber);
+    }
+
+    void remove(TopologySubscriber subscriber) {
+        this.subscribers.remove(subscriber);
+    }
+
+    int size() {
+        return this.subscribers.size();
+    }
+
+    void stop() {
+        this.scheduler.shutdownNow();
+    }
+
+    private void beat() {
+        // writes never block, so one slow client cannot hold up the others
+        this.subscribers.forEach(TopologySubscriber::heartbeat);
+    }
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Set<TopologySubscriber> subscribers = ConcurrentHashMap.newKeySet();
+}
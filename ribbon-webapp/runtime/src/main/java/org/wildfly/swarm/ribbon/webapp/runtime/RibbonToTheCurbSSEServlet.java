@@ -16,11 +16,9 @@
 package org.wildfly.swarm.ribbon.webapp.runtime;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -29,18 +27,31 @@ import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.wildfly.swarm.netflix.ribbon.RibbonExternalAddressMapper;
-import org.wildfly.swarm.netflix.ribbon.RibbonServer;
 import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
 import org.wildfly.swarm.netflix.ribbon.RibbonTopologyListener;
 
 
 /**
+ * Streams the topology to browsers as server-sent events.
+ *
+ * <p>By default every change is sent as the full topology. With
+ * <code>?mode=delta</code>, the full topology is sent once and then only the
+ * servers added and removed per application; a client reconnecting with
+ * <code>Last-Event-ID</code> is sent the deltas it missed. Events are rendered
+ * once and shared by all clients, see {@link TopologyEvents}. The servlet
+ * registers a single topology listener, which records each change once and
+ * hands it to every client, rather than a listener per client.</p>
+ *
+ * <p>Writes are non-blocking, and a single {@link Heartbeat} thread keeps all
+ * connections alive.</p>
+ *
  * @author Bob McWhirter
  */
 @WebServlet(urlPatterns = {"/system/stream"}, asyncSupported = true)
@@ -48,6 +59,10 @@ public class RibbonToTheCurbSSEServlet extends HttpServlet {
 
     private RibbonTopology topology;
     private RibbonExternalAddressMapper externalAddressMapper;
+    private TopologyEvents events;
+    private Heartbeat heartbeat;
+    private RibbonTopologyListener listener;
+    private final Set<TopologySubscriber> subscribers = ConcurrentHashMap.newKeySet();
 
     @Override
     public void init(ServletConfig config) throws ServletException {
@@ -68,6 +83,10 @@ public class RibbonToTheCurbSSEServlet extends HttpServlet {
             e.printStackTrace();
             throw new ServletException(e);
         }
+        this.events = new TopologyEvents(this.externalAddressMapper);
+        this.heartbeat = new Heartbeat(15, TimeUnit.SECONDS);
+        this.listener = this::onChange;
+        this.topology.addListener(this.listener);
     }
 
     @Override
@@ -77,54 +96,27 @@ public class RibbonToTheCurbSSEServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
 
         AsyncContext asyncContext = req.startAsync();
-        PrintWriter writer = resp.getWriter();
-
-        Object writeLock = new Object();
+        ServletOutputStream out = resp.getOutputStream();
 
-        RibbonTopologyListener topologyListener = new RibbonTopologyListener() {
-            @Override
-            public void onChange(RibbonTopology topology) {
-                String json = topologyToJson(req.getServerPort());
-                synchronized (writeLock) {
-                    writer.write("event: topologyChange\n");
-                    writer.write("data: " + json);
-                    writer.flush();
-                }
-            }
-        };
-
-        Thread keepAlive = new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(15_000);
-                    synchronized (writeLock) {
-                        writer.write(":\n\n");
-                        writer.flush();
-                    }
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-        });
+        TopologySubscriber subscriber = new TopologySubscriber(this.events, out, req.getServerPort(),
+                                                               "delta".equals(req.getParameter("mode")), lastEventId(req),
+                                                               asyncContext::complete);
 
         asyncContext.setTimeout(0);
         asyncContext.addListener(new AsyncListener() {
             @Override
             public void onComplete(AsyncEvent asyncEvent) throws IOException {
-                RibbonToTheCurbSSEServlet.this.topology.removeListener(topologyListener);
-                keepAlive.interrupt();
+                unsubscribe(subscriber);
             }
 
             @Override
             public void onTimeout(AsyncEvent asyncEvent) throws IOException {
-                RibbonToTheCurbSSEServlet.this.topology.removeListener(topologyListener);
-                keepAlive.interrupt();
+                unsubscribe(subscriber);
             }
 
             @Override
             public void onError(AsyncEvent asyncEvent) throws IOException {
-                RibbonToTheCurbSSEServlet.this.topology.removeListener(topologyListener);
-                keepAlive.interrupt();
+                unsubscribe(subscriber);
             }
 
             @Override
@@ -132,51 +124,39 @@ public class RibbonToTheCurbSSEServlet extends HttpServlet {
             }
         });
 
+        out.setWriteListener(subscriber);
+        this.subscribers.add(subscriber);
+        this.heartbeat.add(subscriber);
+        subscriber.onChange(this.topology);
+    }
 
-        this.topology.addListener(topologyListener);
-        String json = topologyToJson(req.getServerPort());
-        writer.write("event: topologyChange\n");
-        writer.write("data: " + json);
-        writer.flush();
-
-        keepAlive.start();
+    @Override
+    public void destroy() {
+        this.topology.removeListener(this.listener);
+        this.heartbeat.stop();
+        super.destroy();
+    }
 
+    private void onChange(RibbonTopology topology) {
+        // writes never block, so one thread serves every client
+        this.events.record(topology);
+        this.subscribers.forEach((e) -> e.onChange(topology));
     }
 
-    protected String topologyToJson(int externalPort) {
-        StringBuilder json = new StringBuilder();
-
-        json.append("{");
-
-        Map<String, List<RibbonServer>> map = this.topology.asMap();
-
-        Set<String> keys = map.keySet();
-        Iterator<String> keyIter = keys.iterator();
-
-        while (keyIter.hasNext()) {
-            String key = keyIter.next();
-            json.append("  ").append('"').append(key).append('"').append(": [");
-            List<RibbonServer> list = map.get(key);
-            Iterator<RibbonServer> listIter = list.iterator();
-            while (listIter.hasNext()) {
-                RibbonServer server = listIter.next();
-                server = this.externalAddressMapper.toExternal(server, externalPort);
-                json.append("    ").append('"').append(server).append('"');
-                if (listIter.hasNext()) {
-                    json.append(", ");
-                }
-                json.append("");
-            }
+    private void unsubscribe(TopologySubscriber subscriber) {
+        this.subscribers.remove(subscriber);
+        this.heartbeat.remove(subscriber);
+    }
 
-            json.append("  ]");
-            if (keyIter.hasNext()) {
-                json.append(",");
+    private static long lastEventId(HttpServletRequest req) {
+        String id = req.getHeader("Last-Event-ID");
+        if (id != null) {
+            try {
+                return Long.parseLong(id.trim());
+            } catch (NumberFormatException e) {
+                // not one of ours
             }
-            json.append("");
         }
-
-        json.append("}\n\n");
-
-        return json.toString();
+        return -1;
     }
 }
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.ribbon.webapp.runtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.wildfly.swarm.netflix.ribbon.RibbonExternalAddressMapper;
+import org.wildfly.swarm.netflix.ribbon.RibbonServer;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
+
+/**
+ * Recent versions of the topology, as server-sent events shared by all subscribers.
+ *
+ * <p>Each version is rendered once per external port, both as the full topology
+ * (<code>topologyChange</code>) and as the servers added and removed since the
+ * previous version (<code>topologyDelta</code>). Events carry the version as their
+ * id, so a client reconnecting with <code>Last-Event-ID</code> can be sent the
+ * deltas it missed, as long as they are still in the history.</p>
+ *
+ * @author Bob McWhirter
+ */
+class TopologyEvents {
+
+    static final int HISTORY = 256;
+
+    TopologyEvents(RibbonExternalAddressMapper externalAddressMapper) {
+        this.externalAddressMapper = externalAddressMapper;
+    }
+
+    /**
+     * @return The event of <code>topology</code>, or the latest event if it is newer.
+     */
+    synchronized Event record(RibbonTopology topology) {
+        // version first: the map may then be newer, never older, which later deltas absorb
+        long version = topology.getVersion();
+        if (this.latest != null && version <= this.latest.version) {
+            return this.latest;
+        }
+        Event event = new Event(version, topology.asMap(), this.latest);
+        this.history.addLast(event);
+        if (this.history.size() > HISTORY) {
+            this.history.removeFirst();
+        }
+        this.latest = event;
+        return event;
+    }
+
+    synchronized Event latest() {
+        return this.latest;
+    }
+
+    /**
+     * @return The events following <code>version</code>, or <code>null</code> if that
+     * version is no longer (or was never) known.
+     */
+    synchronized List<Event> since(long version) {
+        if (this.latest == null || version > this.latest.version) {
+            return null;
+        }
+        List<Event> events = new ArrayList<>();
+        Iterator<Event> iter = this.history.descendingIterator();
+        while (iter.hasNext()) {
+            Event each = iter.next();
+            if (each.version == version) {
+                Collections.reverse(events);
+                return events;
+            }
+            events.add(each);
+        }
+        return null;
+    }
+
+    class Event {
+
+        Event(long version, Map<String, List<RibbonServer>> servers, Event previous) {
+            this.version = version;
+            this.servers = servers;
+            if (previous == null) {
+                this.added = Collections.emptyMap();
+                this.removed = Collections.emptyMap();
+            } else {
+                this.added = difference(servers, previous.servers);
+                this.removed = difference(previous.servers, servers);
+            }
+        }
+
+        long getVersion() {
+            return this.version;
+        }
+
+        byte[] full(int externalPort) {
+            return this.full.computeIfAbsent(externalPort, (port) -> {
+                StringBuilder event = new StringBuilder();
+                event.append("id: ").append(this.version).append("\n");
+                event.append("event: topologyChange\n");
+                event.append("data: {");
+                Iterator<Map.Entry<String, List<RibbonServer>>> iter = this.servers.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<String, List<RibbonServer>> each = iter.next();
+                    event.append("  ").append('"').append(each.getKey()).append('"').append(": [");
+                    appendServers(event, each.getValue(), port, "    ");
+                    event.append("  ]");
+                    if (iter.hasNext()) {
+                        event.append(",");
+                    }
+                }
+                event.append("}\n\n");
+                return event.toString().getBytes(StandardCharsets.UTF_8);
+            });
+        }
+
+        byte[] delta(int externalPort) {
+            return this.delta.computeIfAbsent(externalPort, (port) -> {
+                StringBuilder event = new StringBuilder();
+                event.append("id: ").append(this.version).append("\n");
+                event.append("event: topologyDelta\n");
+                event.append("data: {\"version\": ").append(this.version);
+                event.append(", \"added\": ");
+                appendApps(event, this.added, port);
+                event.append(", \"removed\": ");
+                appendApps(event, this.removed, port);
+                event.append("}\n\n");
+                return event.toString().getBytes(StandardCharsets.UTF_8);
+            });
+        }
+
+        private void appendApps(StringBuilder event, Map<String, List<RibbonServer>> apps, int port) {
+            event.append("{");
+            Iterator<Map.Entry<String, List<RibbonServer>>> iter = apps.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<String, List<RibbonServer>> each = iter.next();
+                event.append('"').append(each.getKey()).append('"').append(": [");
+                appendServers(event, each.getValue(), port, "");
+                event.append("]");
+                if (iter.hasNext()) {
+                    event.append(", ");
+                }
+            }
+            event.append("}");
+        }
+
+        private void appendServers(StringBuilder event, List<RibbonServer> servers, int port, String indent) {
+            Iterator<RibbonServer> iter = servers.iterator();
+            while (iter.hasNext()) {
+                RibbonServer server = externalAddressMapper.toExternal(iter.next(), port);
+                event.append(indent).append('"').append(server).append('"');
+                if (iter.hasNext()) {
+                    event.append(", ");
+                }
+            }
+        }
+
+        private final long version;
+
+        private final Map<String, List<RibbonServer>> servers;
+
+        private final Map<String, List<RibbonServer>> added;
+
+        private final Map<String, List<RibbonServer>> removed;
+
+        private final Map<Integer, byte[]> full = new ConcurrentHashMap<>();
+
+        private final Map<Integer, byte[]> delta = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return The servers of each application in <code>left</code> but not in <code>right</code>.
+     */
+    static Map<String, List<RibbonServer>> difference(Map<String, List<RibbonServer>> left, Map<String, List<RibbonServer>> right) {
+        Map<String, List<RibbonServer>> difference = new LinkedHashMap<>();
+        for (Map.Entry<String, List<RibbonServer>> each : left.entrySet()) {
+            List<RibbonServer> others = right.get(each.getKey());
+            if (others == each.getValue()) {
+                continue;
+            }
+            Set<String> addresses = new HashSet<>();
+            if (others != null) {
+                others.forEach((e) -> addresses.add(e.toString()));
+            }
+            List<RibbonServer> servers = new ArrayList<>();
+            for (RibbonServer server : each.getValue()) {
+                if (!addresses.contains(server.toString())) {
+                    servers.add(server);
+                }
+            }
+            if (!servers.isEmpty()) {
+                difference.put(each.getKey(), servers);
+            }
+        }
+        return difference;
+    }
+
+    private final RibbonExternalAddressMapper externalAddressMapper;
+
+    private final Deque<Event> history = new ArrayDeque<>();
+
+    private Event latest;
+}
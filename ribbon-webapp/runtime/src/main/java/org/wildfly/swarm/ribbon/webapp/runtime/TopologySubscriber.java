@@ -0,0 +1,193 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.ribbon.webapp.runtime;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopologyListener;
+
+/**
+ * A connected client, sent either the full topology or, in <code>delta</code>
+ * mode, the changes since the last version it received.
+ *
+ * <p>Writes are non-blocking: events are queued and written whenever the
+ * container reports the stream ready. Queued events are dropped whenever the full
+ * topology is sent, as it supersedes them. A client falling more than
+ * {@link #MAX_PENDING} bytes of deltas behind is sent the full topology
+ * instead.</p>
+ *
+ * @author Bob McWhirter
+ */
+class TopologySubscriber implements RibbonTopologyListener, WriteListener {
+
+    static final int MAX_PENDING = 256 * 1024;
+
+    private static final byte[] KEEP_ALIVE = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    TopologySubscriber(TopologyEvents events, ServletOutputStream out, int externalPort, boolean delta, long lastEventId, Runnable onClose) {
+        this.events = events;
+        this.out = out;
+        this.externalPort = externalPort;
+        this.delta = delta;
+        this.onClose = onClose;
+        // resume only from a version we still have the deltas of
+        if (delta && lastEventId >= 0 && events.since(lastEventId) != null) {
+            this.sent = lastEventId;
+        } else {
+            this.sent = -1;
+        }
+    }
+
+    @Override
+    public void onChange(RibbonTopology topology) {
+        this.events.record(topology);
+        synchronized (this) {
+            send(this.events.latest());
+            write();
+        }
+    }
+
+    /**
+     * Keep the connection open, unless events are already waiting to be written.
+     */
+    synchronized void heartbeat() {
+        if (this.pending.isEmpty()) {
+            this.pending.add(KEEP_ALIVE);
+            this.pendingBytes += KEEP_ALIVE.length;
+            write();
+        }
+    }
+
+    synchronized int getPendingBytes() {
+        return this.pendingBytes;
+    }
+
+    @Override
+    public synchronized void onWritePossible() {
+        write();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        close();
+    }
+
+    private void send(TopologyEvents.Event latest) {
+        if (latest.getVersion() <= this.sent) {
+            return;
+        }
+        List<TopologyEvents.Event> deltas = null;
+        if (this.delta && this.sent >= 0) {
+            deltas = this.events.since(this.sent);
+        }
+        if (deltas != null) {
+            for (TopologyEvents.Event each : deltas) {
+                if (!offer(each.delta(this.externalPort))) {
+                    deltas = null;
+                    break;
+                }
+            }
+        }
+        if (deltas == null) {
+            // supersedes anything not written yet
+            byte[] full = latest.full(this.externalPort);
+            this.pending.clear();
+            this.pending.add(full);
+            this.pendingBytes = full.length;
+        }
+        this.sent = latest.getVersion();
+    }
+
+    /**
+     * @return <code>false</code> if the client is too far behind, in which case everything queued is dropped.
+     */
+    private boolean offer(byte[] event) {
+        if (this.pendingBytes + event.length > MAX_PENDING && !this.pending.isEmpty()) {
+            this.pending.clear();
+            this.pendingBytes = 0;
+            return false;
+        }
+        this.pending.add(event);
+        this.pendingBytes += event.length;
+        return true;
+    }
+
+    private void write() {
+        if (this.closed) {
+            return;
+        }
+        try {
+            while (this.out.isReady()) {
+                byte[] next = this.pending.poll();
+                if (next == null) {
+                    if (this.unflushed) {
+                        this.unflushed = false;
+                        this.out.flush();
+                        continue;
+                    }
+                    return;
+                }
+                this.pendingBytes -= next.length;
+                this.out.write(next);
+                this.unflushed = true;
+            }
+            // called back through onWritePossible() once the container has caught up
+        } catch (IOException | IllegalStateException e) {
+            close();
+        }
+    }
+
+    private void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.pending.clear();
+            this.pendingBytes = 0;
+        }
+        this.onClose.run();
+    }
+
+    private final TopologyEvents events;
+
+    private final ServletOutputStream out;
+
+    private final int externalPort;
+
+    private final boolean delta;
+
+    private final Runnable onClose;
+
+    // guarded by this
+    private final Deque<byte[]> pending = new ArrayDeque<>();
+
+    private int pendingBytes;
+
+    private long sent;
+
+    private boolean unflushed;
+
+    private boolean closed;
+}
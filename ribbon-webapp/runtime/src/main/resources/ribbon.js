@@ -146,10 +146,43 @@ var ribbon = (function() {
       });
     }
 
-    var sse = new EventSource( options.context + "/system/stream" );
+    var sse = new EventSource( options.context + "/system/stream?mode=delta" ),
+        topologyListeners = [];
+
+    function topologyChanged() {
+      var data = JSON.stringify(topology);
+      console.log('ribbon.js: topology changed: ', data);
+      topologyListeners.forEach(function(f) {
+        f(data);
+      });
+    }
+
     sse.addEventListener('topologyChange', function(message) {
-      console.log('ribbon.js: topology changed: ', message.data);
       topology = JSON.parse(message.data);
+      topologyChanged();
+    });
+
+    sse.addEventListener('topologyDelta', function(message) {
+      var delta = JSON.parse(message.data), next = {}, app;
+      for (app in topology) {
+        if (topology.hasOwnProperty(app)) {
+          next[app] = (topology[app] || []).filter(function(server) {
+            return !delta.removed[app] || delta.removed[app].indexOf(server) < 0;
+          });
+        }
+      }
+      for (app in delta.added) {
+        if (delta.added.hasOwnProperty(app)) {
+          next[app] = (next[app] || []).concat(delta.added[app]);
+        }
+      }
+      for (app in next) {
+        if (next.hasOwnProperty(app) && next[app].length < 1) {
+          delete next[app];
+        }
+      }
+      topology = next;
+      topologyChanged();
     });
 
     sse.onerror = function(e) {
@@ -157,9 +190,7 @@ var ribbon = (function() {
     };
 
     function onTopologyChange(f) {
-      sse.addEventListener('topologyChange', function(message) {
-        f(message.data);
-      });
+      topologyListeners.push(f);
     }
 
     var _ribbon = {
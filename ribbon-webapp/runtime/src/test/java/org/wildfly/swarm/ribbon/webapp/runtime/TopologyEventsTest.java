@@ -0,0 +1,124 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.ribbon.webapp.runtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.wildfly.swarm.netflix.ribbon.IdentityExternalAddressMapper;
+import org.wildfly.swarm.netflix.ribbon.RibbonServer;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopologyListener;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class TopologyEventsTest {
+
+    @Test
+    public void testFullAndDelta() {
+        TopologyEvents events = new TopologyEvents(new IdentityExternalAddressMapper());
+
+        Map<String, List<RibbonServer>> map = new LinkedHashMap<>();
+        map.put("app-a", Arrays.asList(new RibbonServer("10.0.0.1", 8080)));
+        events.record(new Topology(1, map));
+
+        map = new LinkedHashMap<>(map);
+        map.put("app-a", Arrays.asList(new RibbonServer("10.0.0.1", 8080), new RibbonServer("10.0.0.2", 8080)));
+        map.put("app-b", Arrays.asList(new RibbonServer("10.0.0.3", 8081)));
+        TopologyEvents.Event event = events.record(new Topology(2, map));
+
+        assertThat(text(event.full(8080))).isEqualTo("id: 2\nevent: topologyChange\n"
+                                                             + "data: {  \"app-a\": [    \"10.0.0.1:8080\",     \"10.0.0.2:8080\"  ],"
+                                                             + "  \"app-b\": [    \"10.0.0.3:8081\"  ]}\n\n");
+        assertThat(text(event.delta(8080))).isEqualTo("id: 2\nevent: topologyDelta\n"
+                                                               + "data: {\"version\": 2, \"added\": {\"app-a\": [\"10.0.0.2:8080\"], \"app-b\": [\"10.0.0.3:8081\"]},"
+                                                               + " \"removed\": {}}\n\n");
+
+        // rendered once, shared by every subscriber
+        assertThat(event.full(8080)).isSameAs(event.full(8080));
+        assertThat(event.delta(8080)).isSameAs(event.delta(8080));
+
+        map = new LinkedHashMap<>(map);
+        map.remove("app-a");
+        event = events.record(new Topology(3, map));
+        assertThat(text(event.delta(8080))).contains("\"removed\": {\"app-a\": [\"10.0.0.1:8080\", \"10.0.0.2:8080\"]}");
+    }
+
+    @Test
+    public void testSince() {
+        TopologyEvents events = new TopologyEvents(new IdentityExternalAddressMapper());
+        assertThat(events.since(0)).isNull();
+
+        for (int version = 1; version <= TopologyEvents.HISTORY + 10; ++version) {
+            events.record(new Topology(version, new LinkedHashMap<>()));
+        }
+        long latest = TopologyEvents.HISTORY + 10;
+
+        // older versions are ignored
+        assertThat(events.record(new Topology(5, new LinkedHashMap<>())).getVersion()).isEqualTo(latest);
+
+        assertThat(events.since(latest)).isEmpty();
+        List<Long> versions = new ArrayList<>();
+        events.since(latest - 3).forEach((e) -> versions.add(e.getVersion()));
+        assertThat(versions).containsExactly(latest - 2, latest - 1, latest);
+
+        // fell out of the history, or never seen
+        assertThat(events.since(1)).isNull();
+        assertThat(events.since(latest + 1)).isNull();
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Topology implements RibbonTopology {
+
+        Topology(long version, Map<String, List<RibbonServer>> map) {
+            this.version = version;
+            this.map = map;
+        }
+
+        @Override
+        public void addListener(RibbonTopologyListener listener) {
+        }
+
+        @Override
+        public void removeListener(RibbonTopologyListener listener) {
+        }
+
+        @Override
+        public Map<String, List<RibbonServer>> asMap() {
+            return this.map;
+        }
+
+        @Override
+        public long getVersion() {
+            return this.version;
+        }
+
+        private final long version;
+
+        private final Map<String, List<RibbonServer>> map;
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.ribbon.webapp.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.junit.Test;
+import org.wildfly.swarm.netflix.ribbon.IdentityExternalAddressMapper;
+import org.wildfly.swarm.netflix.ribbon.RibbonServer;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopologyListener;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class TopologySubscriberTest {
+
+    @Test
+    public void testManyClients() throws Exception {
+        int clients = 5000;
+        int threadsBefore = Thread.activeCount();
+
+        TopologyEvents events = new TopologyEvents(new IdentityExternalAddressMapper());
+        Heartbeat heartbeat = new Heartbeat(20, TimeUnit.MILLISECONDS);
+        AtomicInteger closed = new AtomicInteger();
+        List<Stream> streams = new ArrayList<>();
+        List<TopologySubscriber> subscribers = new ArrayList<>();
+        try {
+            Topology topology = new Topology(1, 0);
+            for (int i = 0; i < clients; ++i) {
+                // every tenth client never reads
+                Stream stream = new Stream(i % 10 != 0);
+                TopologySubscriber subscriber = new TopologySubscriber(events, stream, 8080, (i / 10) % 2 == 0, -1, closed::incrementAndGet);
+                stream.setWriteListener(subscriber);
+                heartbeat.add(subscriber);
+                subscriber.onChange(topology);
+                streams.add(stream);
+                subscribers.add(subscriber);
+            }
+            assertThat(heartbeat.size()).isEqualTo(clients);
+
+            // scale up, one server per version, each full topology rendered once
+            for (int version = 2; version <= 50; ++version) {
+                topology = new Topology(version, version - 1);
+                for (TopologySubscriber each : subscribers) {
+                    each.onChange(topology);
+                }
+            }
+            Thread.sleep(200);
+
+            int full = events.latest().full(8080).length;
+            assertThat(full * 50).isGreaterThan(TopologySubscriber.MAX_PENDING);
+            for (int i = 0; i < clients; ++i) {
+                Stream stream = streams.get(i);
+                TopologySubscriber subscriber = subscribers.get(i);
+                if (stream.ready) {
+                    assertThat(subscriber.getPendingBytes()).isZero();
+                    assertThat(stream.text()).contains("id: 50\n");
+                    assertThat(stream.text()).endsWith(":\n\n");
+                } else {
+                    assertThat(stream.text()).isEmpty();
+                    assertThat(subscriber.getPendingBytes()).isLessThanOrEqualTo(TopologySubscriber.MAX_PENDING + full);
+                }
+            }
+
+            // a slow client catching up on full topologies gets the latest one only
+            Stream slow = streams.get(10);
+            slow.drain();
+            assertThat(slow.text()).startsWith("id: 50\nevent: topologyChange\n");
+            assertThat(slow.text().indexOf("id: ", 1)).isEqualTo(-1);
+
+            // deltas are small enough to be kept
+            slow = streams.get(0);
+            slow.drain();
+            assertThat(slow.text()).contains("id: 2\nevent: topologyDelta\n");
+            assertThat(slow.text()).endsWith("id: 50\nevent: topologyDelta\n"
+                                                     + "data: {\"version\": 50, \"added\": {\"app\": [\"10.0.0.49:8080\"]}, \"removed\": {}}\n\n");
+
+            assertThat(closed.get()).isZero();
+            assertThat(Thread.activeCount() - threadsBefore).isLessThanOrEqualTo(2);
+        } finally {
+            heartbeat.stop();
+        }
+    }
+
+    @Test
+    public void testSlowDeltaClient() throws Exception {
+        TopologyEvents events = new TopologyEvents(new IdentityExternalAddressMapper());
+        Stream stream = new Stream(false);
+        TopologySubscriber subscriber = new TopologySubscriber(events, stream, 8080, true, -1, () -> {
+        });
+        stream.setWriteListener(subscriber);
+
+        // every version moves all the other applications
+        for (int version = 1; version <= 40; ++version) {
+            subscriber.onChange(new Topology(version, 1, version));
+            assertThat(subscriber.getPendingBytes()).isLessThanOrEqualTo(TopologySubscriber.MAX_PENDING);
+        }
+
+        // fell too far behind, so part of the history was replaced by a full topology
+        int everything = 0;
+        for (TopologyEvents.Event each : events.since(1)) {
+            everything += each.delta(8080).length;
+        }
+        stream.drain();
+        assertThat(stream.written).isLessThan(everything);
+        assertThat(stream.written).isLessThanOrEqualTo(TopologySubscriber.MAX_PENDING + events.latest().full(8080).length);
+        assertThat(stream.text()).endsWith("\"other-199\": [\"10.0.1.199:9238\"]}}\n\n");
+    }
+
+    @Test
+    public void testResumeWithDeltas() {
+        TopologyEvents events = new TopologyEvents(new IdentityExternalAddressMapper());
+        for (int version = 1; version <= 5; ++version) {
+            events.record(new Topology(version, version));
+        }
+
+        Stream stream = new Stream(true);
+        TopologySubscriber subscriber = new TopologySubscriber(events, stream, 8080, true, 3, () -> {
+        });
+        stream.setWriteListener(subscriber);
+        subscriber.onChange(new Topology(5, 5));
+
+        assertThat(stream.text()).isEqualTo("id: 4\nevent: topologyDelta\n"
+                                                    + "data: {\"version\": 4, \"added\": {\"app\": [\"10.0.0.4:8080\"]}, \"removed\": {}}\n\n"
+                                                    + "id: 5\nevent: topologyDelta\n"
+                                                    + "data: {\"version\": 5, \"added\": {\"app\": [\"10.0.0.5:8080\"]}, \"removed\": {}}\n\n");
+
+        // unknown versions get the full topology
+        stream = new Stream(true);
+        subscriber = new TopologySubscriber(events, stream, 8080, true, 42, () -> {
+        });
+        stream.setWriteListener(subscriber);
+        subscriber.onChange(new Topology(5, 5));
+        assertThat(stream.text()).startsWith("id: 5\nevent: topologyChange\n");
+    }
+
+    @Test
+    public void testClosedOnError() {
+        TopologyEvents events = new TopologyEvents(new IdentityExternalAddressMapper());
+        AtomicInteger closed = new AtomicInteger();
+        Stream stream = new Stream(true);
+        TopologySubscriber subscriber = new TopologySubscriber(events, stream, 8080, false, -1, closed::incrementAndGet);
+        stream.setWriteListener(subscriber);
+
+        subscriber.onError(new IOException("reset"));
+        subscriber.onError(new IOException("reset"));
+        subscriber.onChange(new Topology(1, 1));
+
+        assertThat(closed.get()).isEqualTo(1);
+        assertThat(stream.text()).isEmpty();
+    }
+
+    private static class Stream extends ServletOutputStream {
+
+        static final int TAIL = 16 * 1024;
+
+        Stream(boolean ready) {
+            this.ready = ready;
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.bytes.write(b, off, len);
+            this.written += len;
+            // keep the tail only, thousands of clients are held
+            if (this.bytes.size() > 2 * TAIL) {
+                byte[] all = this.bytes.toByteArray();
+                this.bytes.reset();
+                this.bytes.write(all, all.length - TAIL, TAIL);
+            }
+        }
+
+        void drain() throws IOException {
+            this.ready = true;
+            this.listener.onWritePossible();
+        }
+
+        String text() {
+            return new String(this.bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private volatile boolean ready;
+
+        private long written;
+
+        private WriteListener listener;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    }
+
+    /**
+     * A single application served by <code>servers</code> nodes, padded with 200 others.
+     */
+    private static class Topology implements RibbonTopology {
+
+        Topology(long version, int servers) {
+            this(version, servers, 0);
+        }
+
+        Topology(long version, int servers, int shift) {
+            this.version = version;
+            List<RibbonServer> list = new ArrayList<>();
+            for (int i = 1; i <= servers; ++i) {
+                list.add(new RibbonServer("10.0.0." + i, 8080));
+            }
+            if (!list.isEmpty()) {
+                this.map.put("app", list);
+            }
+            for (int i = 0; i < 200; ++i) {
+                List<RibbonServer> other = new ArrayList<>();
+                other.add(new RibbonServer("10.0.1." + (i % 250), 9000 + i + shift));
+                this.map.put("other-" + i, other);
+            }
+        }
+
+        @Override
+        public void addListener(RibbonTopologyListener listener) {
+        }
+
+        @Override
+        public void removeListener(RibbonTopologyListener listener) {
+        }
+
+        @Override
+        public Map<String, List<RibbonServer>> asMap() {
+            return this.map;
+        }
+
+        @Override
+        public long getVersion() {
+            return this.version;
+        }
+
+        private final long version;
+
+        private final Map<String, List<RibbonServer>> map = new LinkedHashMap<>();
+    }
+}
@@ -25,4 +25,9 @@ public interface RibbonTopology {
     void addListener(RibbonTopologyListener listener);
     void removeListener(RibbonTopologyListener listener);
     Map<String,List<RibbonServer>> asMap();
+
+    /**
+     * @return The version of this topology, increasing with every change.
+     */
+    long getVersion();
 }
@@ -16,6 +16,9 @@
 package org.wildfly.swarm.netflix.ribbon;
 
 /**
+ * Notified of topology changes, asynchronously and coalesced: a burst of changes
+ * results in a single call with the topology as of the end of the burst.
+ *
  * @author Bob McWhirter
  */
 public interface RibbonTopologyListener {
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.netflix.ribbon.runtime;
+
+import java.util.Set;
+
+import com.netflix.loadbalancer.Server;
+import org.wildfly.clustering.dispatcher.Command;
+
+/**
+ * Every application of a node at once, replacing whatever it advertised before,
+ * except where overtaken by a later command of that node.
+ *
+ * @author Bob McWhirter
+ */
+public class AdvertiseAllCommand implements Command<Void, ClusterManager> {
+
+    private final String nodeKey;
+    private final Set<String> appNames;
+    private final String host;
+    private final int port;
+    private final long sequence;
+
+    public AdvertiseAllCommand(String nodeKey, Set<String> appNames, String host, int port, long sequence) {
+        this.nodeKey = nodeKey;
+        this.appNames = appNames;
+        this.host = host;
+        this.port = port;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public Void execute(ClusterManager context) throws Exception {
+        context.registerAll(this.nodeKey, this.appNames, new Server(this.host, this.port), this.sequence);
+        return null;
+    }
+}
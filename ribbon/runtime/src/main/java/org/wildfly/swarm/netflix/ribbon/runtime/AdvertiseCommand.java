@@ -28,17 +28,19 @@ public class AdvertiseCommand implements Command<Void, ClusterManager> {
     private final String appName;
     private final String host;
     private final int port;
+    private final long sequence;
 
-    public AdvertiseCommand(String nodeKey, String appName, String host, int port) {
+    public AdvertiseCommand(String nodeKey, String appName, String host, int port, long sequence) {
         this.nodeKey = nodeKey;
         this.appName = appName;
         this.host = host;
         this.port = port;
+        this.sequence = sequence;
     }
 
     @Override
     public Void execute(ClusterManager context) throws Exception {
-        context.register(this.nodeKey, this.appName, new Server(this.host, this.port));
+        context.register(this.nodeKey, this.appName, new Server(this.host, this.port), this.sequence);
         return null;
     }
 }
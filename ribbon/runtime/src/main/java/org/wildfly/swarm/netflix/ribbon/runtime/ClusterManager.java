@@ -16,9 +16,11 @@
 package org.wildfly.swarm.netflix.ribbon.runtime;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.netflix.loadbalancer.Server;
 import org.jboss.as.network.SocketBinding;
@@ -29,25 +31,52 @@ import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
 import org.jboss.msc.value.InjectedValue;
+import org.wildfly.clustering.dispatcher.Command;
 import org.wildfly.clustering.dispatcher.CommandDispatcher;
 import org.wildfly.clustering.dispatcher.CommandDispatcherFactory;
 import org.wildfly.clustering.group.Group;
 import org.wildfly.clustering.group.Node;
+import org.wildfly.swarm.bootstrap.logging.BootstrapLogger;
 
 /**
+ * Advertises the applications of this node to the cluster, and registers those of the others.
+ *
+ * <p>Applications are advertised one by one as they are deployed. Members joining
+ * later are sent all of them in a single {@link AdvertiseAllCommand}, by each
+ * existing member only to the new ones, rather than having every member
+ * broadcast every application on every view change. After a merge, when views
+ * may have diverged, each member broadcasts its applications once.</p>
+ *
+ * <p>Every command carries the next of this node's sequence numbers, so members
+ * can ignore commands overtaken by later ones, see {@link ClusterRegistry}.</p>
+ *
+ * <p>Commands sent and received are counted, overall and since the last view
+ * change, and logged at debug level on each view change.</p>
+ *
  * @author Bob McWhirter
  */
 public class ClusterManager implements Service<ClusterManager>, Group.Listener {
 
     public static final ServiceName SERVICE_NAME = ServiceName.of("netflix", "ribbon", "cluster", "manager");
 
+    private static final BootstrapLogger LOG = BootstrapLogger.logger("org.wildfly.swarm.netflix.ribbon");
+
     private InjectedValue<CommandDispatcherFactory> commandDispatcherFactoryInjector = new InjectedValue<>();
     private InjectedValue<SocketBinding> socketBindingInjector = new InjectedValue<>();
     private CommandDispatcher<ClusterManager> dispatcher;
 
     private Set<String> advertisements = new HashSet<>();
+    // guarded by this
+    private long sequence;
+    private Group group;
     private Node node;
 
+    private final AtomicLong commandsSent = new AtomicLong();
+    private final AtomicLong commandsReceived = new AtomicLong();
+    private final AtomicLong viewChanges = new AtomicLong();
+    private volatile long commandsSentAtViewChange;
+    private volatile long commandsReceivedAtViewChange;
+
     public ClusterManager() {
     }
 
@@ -62,15 +91,17 @@ public class ClusterManager implements Service<ClusterManager>, Group.Listener {
 
     @Override
     public void start(StartContext startContext) throws StartException {
-        this.commandDispatcherFactoryInjector.getValue().getGroup().addListener(this);
+        this.group = this.commandDispatcherFactoryInjector.getValue().getGroup();
+        this.group.addListener(this);
         this.dispatcher = this.commandDispatcherFactoryInjector.getValue().createCommandDispatcher("netflix.ribbon.manager", this );
-        this.node = this.commandDispatcherFactoryInjector.getValue().getGroup().getLocalNode();
+        this.node = this.group.getLocalNode();
         requestAdvertisements();
     }
 
 
     @Override
     public void stop(StopContext stopContext) {
+        this.group.removeListener(this);
         this.dispatcher.close();
     }
 
@@ -79,29 +110,86 @@ public class ClusterManager implements Service<ClusterManager>, Group.Listener {
         return this;
     }
 
+    public long getCommandsSent() {
+        return this.commandsSent.get();
+    }
+
+    public long getCommandsReceived() {
+        return this.commandsReceived.get();
+    }
+
+    public long getViewChanges() {
+        return this.viewChanges.get();
+    }
+
+    public long getCommandsSentSinceViewChange() {
+        return this.commandsSent.get() - this.commandsSentAtViewChange;
+    }
+
+    public long getCommandsReceivedSinceViewChange() {
+        return this.commandsReceived.get() - this.commandsReceivedAtViewChange;
+    }
+
     @Override
     public void membershipChanged(List<Node> previousMembers, List<Node> members, boolean merged) {
-        advertiseAll();
+        long sent = this.commandsSent.get();
+        long received = this.commandsReceived.get();
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "view change #" + this.viewChanges.get() + " was followed by " + ( sent - this.commandsSentAtViewChange ) + " advertisement commands sent and "
+                    + ( received - this.commandsReceivedAtViewChange ) + " received" );
+        }
+        this.commandsSentAtViewChange = sent;
+        this.commandsReceivedAtViewChange = received;
+        this.viewChanges.incrementAndGet();
+
         List<Node> removed = new ArrayList<>();
         removed.addAll( previousMembers );
         removed.removeAll( members );
         removed.forEach( (e)->{
             ClusterRegistry.INSTANCE.unregisterAll( nodeKey( e ) );
         });
+
+        if ( merged ) {
+            advertiseAll();
+        } else {
+            List<Node> joined = new ArrayList<>();
+            joined.addAll( members );
+            joined.removeAll( previousMembers );
+            joined.remove( this.node );
+            joined.forEach( this::advertiseTo );
+        }
     }
 
     protected void requestAdvertisements() {
+        submitOnCluster( new RequestAdvertisementsCommand( nodeKey( this.node ) ), this.node );
+    }
+
+    protected synchronized void advertiseAll() {
+        submitOnCluster( advertiseAllCommand() );
+    }
+
+    protected synchronized void advertiseTo(Node node) {
+        if ( this.advertisements.isEmpty() ) {
+            return;
+        }
         try {
-            this.dispatcher.submitOnCluster( new RequestAdvertisementsCommand(), this.node );
+            this.dispatcher.submitOnNode( advertiseAllCommand(), node );
+            this.commandsSent.incrementAndGet();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    protected synchronized void advertiseAll() {
-        for (String each : this.advertisements) {
-            doAdvertise(each);
+    void advertiseTo(String nodeKey) {
+        this.commandsReceived.incrementAndGet();
+        for (Node each : this.group.getNodes()) {
+            if ( nodeKey( each ).equals( nodeKey ) ) {
+                advertiseTo( each );
+                return;
+            }
         }
+        // not in our view yet, so answer everyone
+        advertiseAll();
     }
 
     protected synchronized void advertise(String appName) {
@@ -111,28 +199,41 @@ public class ClusterManager implements Service<ClusterManager>, Group.Listener {
 
     protected void doAdvertise(String appName) {
         SocketBinding binding = this.socketBindingInjector.getValue();
-        try {
-            this.dispatcher.submitOnCluster(new AdvertiseCommand(nodeKey(this.node), appName, binding.getAddress().getHostAddress(), binding.getAbsolutePort() ) );
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        submitOnCluster(new AdvertiseCommand(nodeKey(this.node), appName, binding.getAddress().getHostAddress(), binding.getAbsolutePort(), ++this.sequence ) );
     }
 
     protected synchronized void unadvertise(String appName) {
         this.advertisements.remove(appName);
+        submitOnCluster(new UnadvertiseCommand(nodeKey(this.node), appName, ++this.sequence));
+    }
+
+    private AdvertiseAllCommand advertiseAllCommand() {
+        SocketBinding binding = this.socketBindingInjector.getValue();
+        return new AdvertiseAllCommand(nodeKey(this.node), new HashSet<>(this.advertisements), binding.getAddress().getHostAddress(), binding.getAbsolutePort(), ++this.sequence);
+    }
+
+    private void submitOnCluster(Command<Void, ClusterManager> command, Node... excludedNodes) {
         try {
-            this.dispatcher.submitOnCluster(new UnadvertiseCommand(nodeKey(this.node), appName));
+            this.dispatcher.submitOnCluster( command, excludedNodes );
+            this.commandsSent.incrementAndGet();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    void register(String nodeKey, String appName, Server server) {
-        ClusterRegistry.INSTANCE.register( nodeKey, appName, server );
+    void register(String nodeKey, String appName, Server server, long sequence) {
+        this.commandsReceived.incrementAndGet();
+        ClusterRegistry.INSTANCE.register( nodeKey, appName, server, sequence );
+    }
+
+    void registerAll(String nodeKey, Collection<String> appNames, Server server, long sequence) {
+        this.commandsReceived.incrementAndGet();
+        ClusterRegistry.INSTANCE.registerAll( nodeKey, appNames, server, sequence );
     }
 
-    void unregister(String nodeKey, String appName) {
-        ClusterRegistry.INSTANCE.unregister(nodeKey, appName);
+    void unregister(String nodeKey, String appName, long sequence) {
+        this.commandsReceived.incrementAndGet();
+        ClusterRegistry.INSTANCE.unregister(nodeKey, appName, sequence);
     }
 
     String nodeKey(Node node) {
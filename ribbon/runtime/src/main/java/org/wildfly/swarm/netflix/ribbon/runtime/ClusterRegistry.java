@@ -16,107 +16,301 @@
 package org.wildfly.swarm.netflix.ribbon.runtime;
 
 import com.netflix.loadbalancer.Server;
+import org.wildfly.swarm.SwarmProperties;
 import org.wildfly.swarm.netflix.ribbon.RibbonServer;
 import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
 import org.wildfly.swarm.netflix.ribbon.RibbonTopologyListener;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 /**
+ * Servers of each application, as advertised by the nodes of the cluster.
+ *
+ * <p>Registrations are indexed by application and by node. Every change publishes
+ * an immutable snapshot of the servers of each application, so lookups, which
+ * Ribbon performs on every refresh of every client, never lock.</p>
+ *
+ * <p>Listeners are notified asynchronously with the snapshot current at the end of
+ * a window of <code>swarm.ribbon.notification.window</code> milliseconds (50 by
+ * default) following a change, so registering all the applications of a joining
+ * node results in one notification rather than one per application.</p>
+ *
+ * <p>Commands from a node may arrive out of order, as some are sent to the whole
+ * cluster and others to a single member. The sequenced variants of the
+ * registration methods therefore keep, per node and application, the sequence
+ * of the last command applied, and ignore older ones. A stale
+ * {@link #registerAll(String, Collection, Server, long)} thus neither removes an
+ * application advertised since, nor restores one withdrawn since.</p>
+ *
  * @author Bob McWhirter
  */
 public class ClusterRegistry implements RibbonTopology {
 
     public static final ClusterRegistry INSTANCE = new ClusterRegistry();
 
-    private List<Registration> registrations = new ArrayList<>();
+    private static final long DEFAULT_NOTIFICATION_WINDOW = 50;
+
+    // appName -> nodeKey -> server, guarded by this
+    private final Map<String, Map<String, Server>> registrations = new HashMap<>();
+
+    // nodeKey -> appNames, guarded by this
+    private final Map<String, Set<String>> nodes = new HashMap<>();
+
+    // nodeKey -> appName -> sequence of the last command applied, removals included, guarded by this
+    private final Map<String, Map<String, Long>> sequences = new HashMap<>();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
 
-    private List<RibbonTopologyListener> listeners = new ArrayList<>();
+    private final TopologyNotifier notifier;
+
+    public ClusterRegistry() {
+        this(Long.getLong(SwarmProperties.RIBBON_NOTIFICATION_WINDOW, DEFAULT_NOTIFICATION_WINDOW));
+    }
+
+    ClusterRegistry(long notificationWindow) {
+        this.notifier = new TopologyNotifier(() -> new View(this.snapshot), notificationWindow);
+    }
 
     public void addListener(RibbonTopologyListener listener) {
-        this.listeners.add( listener );
+        this.notifier.addListener( listener );
     }
 
     public void removeListener(RibbonTopologyListener listener) {
-        this.listeners.remove( listener );
+        this.notifier.removeListener( listener );
     }
 
-    public synchronized List<Server> getServers(String appName) {
-        return this.registrations
-                .stream()
-                .filter((e) -> e.appName.equals(appName))
-                .map((e) -> e.server)
-                .collect(Collectors.toList());
+    public List<Server> getServers(String appName) {
+        List<Server> servers = this.snapshot.servers.get(appName);
+        if ( servers == null ) {
+            return Collections.emptyList();
+        }
+        return servers;
     }
 
     public synchronized void register(String nodeKey, String appName, Server server) {
         if ( ! hasRegistration( nodeKey, appName, server ) ) {
-            this.registrations.add(new Registration(nodeKey, appName, server));
-            fireListeners();
+            this.registrations.computeIfAbsent(appName, (k) -> new LinkedHashMap<>()).put(nodeKey, server);
+            this.nodes.computeIfAbsent(nodeKey, (k) -> new LinkedHashSet<>()).add(appName);
+            publish(Collections.singleton(appName));
+        }
+    }
+
+    /**
+     * Register unless a later command of <code>nodeKey</code> about <code>appName</code> was applied.
+     */
+    public synchronized void register(String nodeKey, String appName, Server server, long sequence) {
+        if ( advance( nodeKey, appName, sequence ) ) {
+            register( nodeKey, appName, server );
+        }
+    }
+
+    /**
+     * Unregister unless a later command of <code>nodeKey</code> about <code>appName</code> was applied.
+     */
+    public synchronized void unregister(String nodeKey, String appName, long sequence) {
+        if ( advance( nodeKey, appName, sequence ) ) {
+            unregister( nodeKey, appName );
+        }
+    }
+
+    /**
+     * Replace everything advertised by <code>nodeKey</code>, except the applications
+     * a later command of <code>nodeKey</code> was applied to, which keep their state.
+     */
+    public synchronized void registerAll(String nodeKey, Collection<String> appNames, Server server, long sequence) {
+        Set<String> current = this.nodes.getOrDefault(nodeKey, Collections.emptySet());
+        Set<String> all = new LinkedHashSet<>(current);
+        all.addAll(appNames);
+        Set<String> kept = new LinkedHashSet<>();
+        for (String appName : all) {
+            boolean registered = advance( nodeKey, appName, sequence ) ? appNames.contains(appName) : current.contains(appName);
+            if ( registered ) {
+                kept.add(appName);
+            }
+        }
+        registerAll( nodeKey, kept, server );
+    }
+
+    /**
+     * Replace everything advertised by <code>nodeKey</code>, as a single change.
+     */
+    public synchronized void registerAll(String nodeKey, Collection<String> appNames, Server server) {
+        Set<String> changed = new HashSet<>();
+        Set<String> previous = this.nodes.computeIfAbsent(nodeKey, (k) -> new LinkedHashSet<>());
+        for (Iterator<String> iter = previous.iterator(); iter.hasNext(); ) {
+            String appName = iter.next();
+            if ( ! appNames.contains(appName) ) {
+                remove(nodeKey, appName);
+                iter.remove();
+                changed.add(appName);
+            }
+        }
+        for (String appName : appNames) {
+            if ( ! hasRegistration( nodeKey, appName, server ) ) {
+                this.registrations.computeIfAbsent(appName, (k) -> new LinkedHashMap<>()).put(nodeKey, server);
+                previous.add(appName);
+                changed.add(appName);
+            }
+        }
+        if ( previous.isEmpty() ) {
+            this.nodes.remove(nodeKey);
+        }
+        if ( ! changed.isEmpty() ) {
+            publish(changed);
         }
     }
 
     protected synchronized long countRegistrations(String nodeKey, String appName, Server server) {
-        return this.registrations.stream()
-                .filter((e) -> e.nodeKey.equals(nodeKey) && e.appName.equals(appName))
-                .collect(Collectors.counting());
+        return hasRegistration(nodeKey, appName, server) ? 1 : 0;
     }
 
     protected synchronized boolean hasRegistration(String nodeKey, String appName, Server server) {
-        return this.registrations.stream().anyMatch((e) -> e.nodeKey.equals(nodeKey) && e.appName.equals(appName));
+        Map<String, Server> servers = this.registrations.get(appName);
+        return servers != null && servers.containsKey(nodeKey);
     }
 
     public synchronized void unregister(String nodeKey, String appName) {
-        boolean removed = this.registrations.removeIf((e) -> e.nodeKey.equals(nodeKey) && e.appName.equals(appName));
-        if ( removed ) {
-            fireListeners();
+        if ( remove(nodeKey, appName) ) {
+            Set<String> appNames = this.nodes.get(nodeKey);
+            appNames.remove(appName);
+            if ( appNames.isEmpty() ) {
+                this.nodes.remove(nodeKey);
+            }
+            publish(Collections.singleton(appName));
         }
     }
 
     public synchronized void unregisterAll(String nodeKey) {
-        boolean removed = this.registrations.removeIf((e) -> e.nodeKey.equals(nodeKey));
-        if ( removed ) {
-            fireListeners();
+        this.sequences.remove(nodeKey);
+        Set<String> appNames = this.nodes.remove(nodeKey);
+        if ( appNames != null ) {
+            appNames.forEach( (e) -> remove(nodeKey, e) );
+            publish(appNames);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if <code>sequence</code> is later than that of the last
+     * command applied, in which case it becomes the last one.
+     */
+    private boolean advance(String nodeKey, String appName, long sequence) {
+        Map<String, Long> applied = this.sequences.computeIfAbsent(nodeKey, (k) -> new HashMap<>());
+        Long last = applied.get(appName);
+        if ( last != null && last >= sequence ) {
+            return false;
+        }
+        applied.put(appName, sequence);
+        return true;
+    }
+
+    private boolean remove(String nodeKey, String appName) {
+        Map<String, Server> servers = this.registrations.get(appName);
+        if ( servers == null || servers.remove(nodeKey) == null ) {
+            return false;
+        }
+        if ( servers.isEmpty() ) {
+            this.registrations.remove(appName);
         }
+        return true;
     }
 
-    private void fireListeners() {
-        this.listeners.forEach( (e)->{
-            e.onChange(this);
-        });
+    private void publish(Collection<String> appNames) {
+        this.snapshot = this.snapshot.update(appNames, this.registrations);
+        this.notifier.changed();
     }
 
     @Override
-    public synchronized Map<String,List<RibbonServer>> asMap() {
-        Map<String,List<RibbonServer>> map = new HashMap<>();
-
-        this.registrations.forEach( (reg)->{
-            List<RibbonServer> list = map.get(reg.appName);
-            if ( list == null ) {
-                list = new ArrayList<RibbonServer>();
-                map.put( reg.appName, list );
-            }
+    public Map<String,List<RibbonServer>> asMap() {
+        return this.snapshot.ribbonServers;
+    }
+
+    @Override
+    public long getVersion() {
+        return this.snapshot.version;
+    }
+
+    /**
+     * A published snapshot, as handed to listeners.
+     */
+    private class View implements RibbonTopology {
+
+        View(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void addListener(RibbonTopologyListener listener) {
+            ClusterRegistry.this.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(RibbonTopologyListener listener) {
+            ClusterRegistry.this.removeListener(listener);
+        }
+
+        @Override
+        public Map<String, List<RibbonServer>> asMap() {
+            return this.snapshot.ribbonServers;
+        }
 
-            list.add( new RibbonServer(reg.server.getHost(), reg.server.getPort() ) );
-        });
+        @Override
+        public long getVersion() {
+            return this.snapshot.version;
+        }
 
-        return map;
+        private final Snapshot snapshot;
     }
 
-    private static class Registration {
-        public String nodeKey;
-        public String appName;
-        public Server server;
+    /**
+     * Servers of each application, never modified once published.
+     */
+    private static class Snapshot {
 
-        public Registration(String nodeKey, String appName, Server server) {
-            this.nodeKey = nodeKey;
-            this.appName = appName;
-            this.server = server;
+        static final Snapshot EMPTY = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap());
+
+        Snapshot(long version, Map<String, List<Server>> servers, Map<String, List<RibbonServer>> ribbonServers) {
+            this.version = version;
+            this.servers = servers;
+            this.ribbonServers = Collections.unmodifiableMap(ribbonServers);
+        }
+
+        /**
+         * @return A copy of this snapshot, with the lists of <code>appNames</code> rebuilt.
+         */
+        Snapshot update(Collection<String> appNames, Map<String, Map<String, Server>> registrations) {
+            Map<String, List<Server>> servers = new HashMap<>(this.servers);
+            Map<String, List<RibbonServer>> ribbonServers = new HashMap<>(this.ribbonServers);
+            for (String appName : appNames) {
+                Map<String, Server> byNode = registrations.get(appName);
+                if ( byNode == null ) {
+                    servers.remove(appName);
+                    ribbonServers.remove(appName);
+                    continue;
+                }
+                List<Server> list = new ArrayList<>(byNode.values());
+                List<RibbonServer> ribbonList = new ArrayList<>(list.size());
+                list.forEach( (e) -> ribbonList.add( new RibbonServer(e.getHost(), e.getPort()) ) );
+                servers.put(appName, Collections.unmodifiableList(list));
+                ribbonServers.put(appName, Collections.unmodifiableList(ribbonList));
+            }
+            return new Snapshot(this.version + 1, servers, ribbonServers);
         }
+
+        private final long version;
+
+        private final Map<String, List<Server>> servers;
+
+        private final Map<String, List<RibbonServer>> ribbonServers;
     }
 
 }
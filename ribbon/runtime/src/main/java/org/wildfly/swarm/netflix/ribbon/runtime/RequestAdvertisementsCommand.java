@@ -18,16 +18,21 @@ package org.wildfly.swarm.netflix.ribbon.runtime;
 import org.wildfly.clustering.dispatcher.Command;
 
 /**
+ * Sent by a starting node, which is answered by each member with its applications.
+ *
  * @author Bob McWhirter
  */
 public class RequestAdvertisementsCommand implements Command<Void, ClusterManager> {
 
-    public RequestAdvertisementsCommand() {
+    private final String nodeKey;
+
+    public RequestAdvertisementsCommand(String nodeKey) {
+        this.nodeKey = nodeKey;
     }
 
     @Override
     public Void execute(ClusterManager context) throws Exception {
-        context.advertiseAll();
+        context.advertiseTo(this.nodeKey);
         return null;
     }
 }
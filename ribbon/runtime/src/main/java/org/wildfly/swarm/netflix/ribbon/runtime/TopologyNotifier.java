@@ -0,0 +1,146 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.netflix.ribbon.runtime;
+
+import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopologyListener;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Delivers topology changes to listeners off the registry's lock.
+ *
+ * <p>Changes are coalesced over a window, after which each listener receives the
+ * latest snapshot. A listener still busy with a previous snapshot receives only
+ * the latest one once it returns, so a slow listener delays neither writers nor
+ * other listeners.</p>
+ *
+ * <p>Listeners are called from a fixed pool of {@link #DELIVERY_THREADS} threads
+ * shared by all registries, however many listeners there are; only that many
+ * listeners blocking at once would hold up the others.</p>
+ *
+ * @author Bob McWhirter
+ */
+class TopologyNotifier {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor((r) -> {
+        Thread thread = new Thread(r, "ribbon-topology-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // listeners may block, so not tied to the number of processors
+    static final int DELIVERY_THREADS = 4;
+
+    // busy subscribers never queue more than once, so the queue is bounded by the number of listeners
+    private static final ExecutorService DELIVERY = Executors.newFixedThreadPool(DELIVERY_THREADS, (r) -> {
+        Thread thread = new Thread(r, "ribbon-topology-listener");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Supplier<RibbonTopology> snapshots;
+
+    private final long window;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    TopologyNotifier(Supplier<RibbonTopology> snapshots, long window) {
+        this.snapshots = snapshots;
+        this.window = window;
+    }
+
+    void addListener(RibbonTopologyListener listener) {
+        this.subscribers.add( new Subscriber(listener) );
+    }
+
+    void removeListener(RibbonTopologyListener listener) {
+        this.subscribers.removeIf( (e) -> e.listener == listener );
+    }
+
+    /**
+     * Note a change; listeners are notified once the window closes.
+     */
+    void changed() {
+        if ( this.subscribers.isEmpty() || ! this.scheduled.compareAndSet(false, true) ) {
+            return;
+        }
+        SCHEDULER.schedule(this::flush, this.window, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        this.scheduled.set(false);
+        RibbonTopology snapshot = this.snapshots.get();
+        this.subscribers.forEach( (e) -> e.offer(snapshot) );
+    }
+
+    private static class Subscriber implements Runnable {
+
+        Subscriber(RibbonTopologyListener listener) {
+            this.listener = listener;
+        }
+
+        void offer(RibbonTopology snapshot) {
+            this.pending.set(snapshot);
+            if ( this.running.compareAndSet(false, true) ) {
+                DELIVERY.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                RibbonTopology snapshot = this.pending.getAndSet(null);
+                if ( snapshot == null ) {
+                    this.running.set(false);
+                    // an offer may have arrived between the two lines above
+                    if ( this.pending.get() != null && this.running.compareAndSet(false, true) ) {
+                        continue;
+                    }
+                    return;
+                }
+                if ( snapshot.getVersion() <= this.delivered ) {
+                    continue;
+                }
+                this.delivered = snapshot.getVersion();
+                try {
+                    this.listener.onChange(snapshot);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private final RibbonTopologyListener listener;
+
+        private final AtomicReference<RibbonTopology> pending = new AtomicReference<>();
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        // only accessed by the thread holding running
+        private long delivered = -1;
+    }
+}
@@ -25,15 +25,17 @@ public class UnadvertiseCommand implements Command<Void,ClusterManager> {
 
     private final String appName;
     private final String nodeKey;
+    private final long sequence;
 
-    public UnadvertiseCommand(String nodeKey, String appName) {
+    public UnadvertiseCommand(String nodeKey, String appName, long sequence) {
         this.nodeKey = nodeKey;
         this.appName = appName;
+        this.sequence = sequence;
     }
 
     @Override
     public Void execute(ClusterManager context) throws Exception {
-        context.unregister( this.nodeKey, this.appName );
+        context.unregister( this.nodeKey, this.appName, this.sequence );
         return null;
     }
 }
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.netflix.ribbon.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.netflix.loadbalancer.Server;
+import org.junit.Test;
+import org.wildfly.swarm.netflix.ribbon.RibbonTopology;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class ClusterRegistryTest {
+
+    @Test
+    public void testRegistrations() {
+        ClusterRegistry registry = new ClusterRegistry();
+
+        registry.register("node1", "app-a", new Server("10.0.0.1", 8080));
+        registry.register("node1", "app-a", new Server("10.0.0.1", 8080));
+        registry.register("node2", "app-a", new Server("10.0.0.2", 8080));
+        registry.register("node1", "app-b", new Server("10.0.0.1", 8080));
+
+        assertThat(registry.getVersion()).isEqualTo(3);
+        assertThat(registry.getServers("app-a")).hasSize(2);
+        assertThat(registry.getServers("app-b")).hasSize(1);
+        assertThat(registry.getServers("app-c")).isEmpty();
+        assertThat(registry.asMap().get("app-a").get(1).toString()).isEqualTo("10.0.0.2:8080");
+
+        List<Server> before = registry.getServers("app-a");
+        registry.unregister("node2", "app-a");
+        assertThat(before).hasSize(2);
+        assertThat(registry.getServers("app-a")).hasSize(1);
+
+        registry.unregisterAll("node1");
+        assertThat(registry.getServers("app-a")).isEmpty();
+        assertThat(registry.asMap()).isEmpty();
+        assertThat(registry.hasRegistration("node1", "app-b", null)).isFalse();
+
+        registry.unregisterAll("node1");
+        assertThat(registry.getVersion()).isEqualTo(5);
+    }
+
+    @Test
+    public void testRegisterAll() {
+        ClusterRegistry registry = new ClusterRegistry();
+        Server server = new Server("10.0.0.1", 8080);
+
+        registry.register("node1", "app-a", server);
+        registry.register("node2", "app-a", new Server("10.0.0.2", 8080));
+        registry.registerAll("node1", Arrays.asList("app-b", "app-c"), server);
+        assertThat(registry.getVersion()).isEqualTo(3);
+        assertThat(registry.getServers("app-a")).hasSize(1);
+        assertThat(registry.getServers("app-b")).hasSize(1);
+        assertThat(registry.getServers("app-c")).hasSize(1);
+
+        // unchanged
+        registry.registerAll("node1", Arrays.asList("app-c", "app-b"), server);
+        assertThat(registry.getVersion()).isEqualTo(3);
+
+        registry.registerAll("node1", Collections.<String>emptyList(), server);
+        assertThat(registry.asMap().keySet()).containsOnly("app-a");
+        registry.unregisterAll("node1");
+        assertThat(registry.getVersion()).isEqualTo(4);
+    }
+
+    @Test
+    public void testStaleCommandsAreIgnored() {
+        ClusterRegistry registry = new ClusterRegistry();
+        Server server = new Server("10.0.0.1", 8080);
+
+        registry.register("node1", "app-a", server, 1);
+        registry.register("node1", "app-x", server, 3);
+        // sent before app-x was advertised, received after
+        registry.registerAll("node1", Arrays.asList("app-a", "app-b"), server, 2);
+        assertThat(registry.asMap().keySet()).containsOnly("app-a", "app-b", "app-x");
+
+        // withdrawn since, so not restored either
+        registry.unregister("node1", "app-b", 5);
+        registry.registerAll("node1", Arrays.asList("app-a", "app-b", "app-x"), server, 4);
+        assertThat(registry.asMap().keySet()).containsOnly("app-a", "app-x");
+
+        registry.register("node1", "app-b", server, 5);
+        registry.unregister("node1", "app-a", 1);
+        assertThat(registry.asMap().keySet()).containsOnly("app-a", "app-x");
+
+        // later ones apply, removals included
+        registry.registerAll("node1", Collections.singletonList("app-x"), server, 6);
+        assertThat(registry.asMap().keySet()).containsOnly("app-x");
+
+        // a node leaving starts over
+        registry.unregisterAll("node1");
+        registry.register("node1", "app-a", server, 1);
+        assertThat(registry.asMap().keySet()).containsOnly("app-a");
+    }
+
+    @Test
+    public void testNotificationsAreCoalesced() throws Exception {
+        ClusterRegistry registry = new ClusterRegistry(100);
+        List<RibbonTopology> changes = new CopyOnWriteArrayList<>();
+        CountDownLatch notified = new CountDownLatch(1);
+        registry.addListener((topology) -> {
+            changes.add(topology);
+            notified.countDown();
+        });
+
+        for (int app = 0; app < 20; ++app) {
+            registry.register("node1", "app" + app, new Server("10.0.0.1", 8080));
+        }
+        assertThat(changes).isEmpty();
+
+        assertThat(notified.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200);
+        assertThat(changes).hasSize(1);
+        assertThat(changes.get(0).getVersion()).isEqualTo(20);
+        assertThat(changes.get(0).asMap()).hasSize(20);
+
+        // later changes do not alter the delivered snapshot
+        registry.unregisterAll("node1");
+        assertThat(changes.get(0).asMap()).hasSize(20);
+    }
+
+    @Test
+    public void testSlowListener() throws Exception {
+        ClusterRegistry registry = new ClusterRegistry(0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> slow = new CopyOnWriteArrayList<>();
+        List<Long> fast = new CopyOnWriteArrayList<>();
+        registry.addListener((topology) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slow.add(topology.getVersion());
+        });
+        registry.addListener((topology) -> fast.add(topology.getVersion()));
+
+        registry.register("node1", "app-a", new Server("10.0.0.1", 8080));
+        waitFor(fast, 1L);
+
+        // writers and other listeners proceed while the slow one is busy
+        long start = System.nanoTime();
+        for (int app = 0; app < 50; ++app) {
+            registry.register("node2", "app" + app, new Server("10.0.0.2", 8080));
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        waitFor(fast, 51L);
+        assertThat(slow).isEmpty();
+
+        // once released, the slow listener catches up with the latest snapshot only
+        release.countDown();
+        waitFor(slow, 51L);
+        assertThat(slow.size()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void testManyListenersShareThePool() throws Exception {
+        ClusterRegistry registry = new ClusterRegistry(0);
+        int listeners = 2000;
+        CountDownLatch notified = new CountDownLatch(listeners);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < listeners; ++i) {
+            registry.addListener((topology) -> {
+                threads.add(Thread.currentThread());
+                notified.countDown();
+            });
+        }
+
+        registry.register("node1", "app-a", new Server("10.0.0.1", 8080));
+
+        assertThat(notified.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads.size()).isLessThanOrEqualTo(TopologyNotifier.DELIVERY_THREADS);
+    }
+
+    private static void waitFor(List<Long> versions, long version) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!versions.contains(version)) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testLookupsDuringChurn() throws Exception {
+        ClusterRegistry registry = new ClusterRegistry();
+        int apps = 500;
+        for (int app = 0; app < apps; ++app) {
+            for (int node = 0; node < 4; ++node) {
+                registry.register("node" + node, "app" + app, new Server("10.0." + node + "." + (app % 250), 8080 + app));
+            }
+        }
+
+        int readers = 8;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(readers);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; ++i) {
+            final int offset = i;
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                long count = 0;
+                try {
+                    while (running.get()) {
+                        // node0 to node2 never leave, so no lookup may ever come back empty
+                        assertThat(registry.getServers("app" + ((offset + count) % apps)).size()).isGreaterThanOrEqualTo(3);
+                        ++count;
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+
+        // membership churn while reading
+        for (int change = 0; change < 5000; ++change) {
+            registry.unregister("node3", "app" + (change % apps));
+            registry.register("node3", "app" + (change % apps), new Server("10.0.3.1", 8080));
+        }
+        running.set(false);
+        for (Thread each : threads) {
+            each.join();
+        }
+
+        assertThat(failure.get()).isNull();
+        for (int app = 0; app < apps; ++app) {
+            assertThat(registry.getServers("app" + app)).hasSize(4);
+        }
+    }
+}
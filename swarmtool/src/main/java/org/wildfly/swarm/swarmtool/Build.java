@@ -26,6 +26,7 @@ import org.wildfly.swarm.fractionlist.FractionDescriptor;
 import org.wildfly.swarm.fractionlist.FractionList;
 import org.wildfly.swarm.tools.BuildTool;
 import org.wildfly.swarm.tools.PackageAnalyzer;
+import org.wildfly.swarm.tools.PackageCache;
 
 import java.io.File;
 import java.nio.file.Paths;
@@ -87,6 +88,12 @@ public class Build {
         return this;
     }
 
+    public Build packageCache(File dir) {
+        this.packageCache = dir;
+
+        return this;
+    }
+
     private Set<String> allRequiredFractions() {
         final FractionList fractionList = new FractionList();
         final Set<String> fractions = new HashSet<>();
@@ -127,7 +134,16 @@ public class Build {
                 .properties(this.properties);
 
         if (this.autoDetectFractions) {
-            this.swarmDependencies.addAll(new PackageAnalyzer(this.source).detectNeededFractions());
+            final PackageAnalyzer analyzer = new PackageAnalyzer(this.source,
+                                                                 this.packageCache != null
+                                                                         ? new PackageCache(this.packageCache.toPath())
+                                                                         : PackageCache.defaultCache());
+            this.swarmDependencies.addAll(analyzer.detectNeededFractions());
+            if (analyzer.getCache() != null) {
+                System.err.println(String.format("Fraction auto-detection: %d nested jars from cache, %d scanned",
+                                                 analyzer.getCache().getHits(),
+                                                 analyzer.getCache().getMisses()));
+            }
         } else {
             System.err.println("Skipping fraction auto-detection");
         }
@@ -157,5 +173,6 @@ public class Build {
     private String version;
     private Properties properties;
     private boolean autoDetectFractions = true;
+    private File packageCache;
 
 }
@@ -97,6 +97,7 @@ public class Main {
                 .outputDir(new File(foundOptions.valueOf(OUTPUT_DIR_OPT)))
                 .name(foundOptions.valueOf(NAME_OPT))
                 .autoDetectFractions(!foundOptions.has(DISABLE_AUTO_DETECT))
+                .packageCache(foundOptions.valueOf(PACKAGE_CACHE_OPT))
                 .properties(properties)
                 .run();
     }
@@ -122,6 +123,12 @@ public class Main {
     private static final OptionSpec<Void> DISABLE_AUTO_DETECT =
             OPT_PARSER.accepts("no-fraction-detect", "disable auto fraction detection");
 
+    private static final OptionSpec<File> PACKAGE_CACHE_OPT =
+            OPT_PARSER.accepts("package-cache", "directory caching the packages of scanned jars between runs (default: no cache)")
+                    .withRequiredArg()
+                    .ofType(File.class)
+                    .describedAs("path");
+
     private static final OptionSpec<String> FRACTIONS_OPT =
             OPT_PARSER.acceptsAll(asList("f", "fractions"), "swarm fractions to include")
                     .withRequiredArg()
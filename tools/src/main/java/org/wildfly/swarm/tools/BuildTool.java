@@ -40,6 +40,7 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
@@ -67,6 +68,19 @@ public class BuildTool {
 
     private Set<String> additionalModules = new HashSet<>();
 
+    private boolean incremental = false;
+
+    private DependencyAnalysisCache analysisCache;
+
+    private boolean storeNestedJars = false;
+
+    private Path dependencyLayer;
+
+    private int compressionThreads = 1;
+
+    private Consumer<String> log = (message) -> {
+    };
+
     public BuildTool() {
         this.archive = ShrinkWrap.create(JavaArchive.class);
     }
@@ -86,6 +100,59 @@ public class BuildTool {
         return this;
     }
 
+    /**
+     * Rewrite only the entries that changed since the previous build of the
+     * uber-jar, copying the compressed data of all others from it.
+     */
+    public BuildTool incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * Store nested jars (such as those of <code>m2repo/</code>) uncompressed, so they
+     * are not compressed twice and can be read directly from the mapped uber-jar.
+     */
+    public BuildTool storeNestedJars(boolean storeNestedJars) {
+        this.storeNestedJars = storeNestedJars;
+        return this;
+    }
+
+    /**
+     * Build a thin uber-jar, writing its artifacts to a content-addressed
+     * directory instead of bundling them.
+     *
+     * @see org.wildfly.swarm.bootstrap.util.DependencyLayer
+     */
+    public BuildTool dependencyLayer(Path dir) {
+        this.dependencyLayer = dir;
+        return this;
+    }
+
+    /**
+     * Compress the uber-jar's entries on several threads. With the default of one
+     * thread, and unless nested jars are stored, the jar is written by ShrinkWrap's
+     * {@link ZipExporter}, which unlike {@link UberJarExporter} supports ZIP64.
+     */
+    public BuildTool compressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    /**
+     * Keep the results of dependency analysis in <code>file</code>, and reuse them
+     * instead of reading any dependency jars while the dependencies are unchanged.
+     */
+    public BuildTool analysisCache(File file) {
+        this.analysisCache = new DependencyAnalysisCache(file);
+        return this;
+    }
+
+    public BuildTool log(Consumer<String> log) {
+        this.log = log;
+        return this;
+    }
+
     public BuildTool resolveTransitiveDependencies(boolean resolveTransitiveDependencies) {
         this.resolveTransitiveDependencies = resolveTransitiveDependencies;
         return this;
@@ -149,7 +216,24 @@ public class BuildTool {
     }
 
     protected void analyzeDependencies() throws Exception {
-        this.dependencyManager.analyzeDependencies(this.resolveTransitiveDependencies);
+        if (this.analysisCache == null || this.resolveTransitiveDependencies) {
+            this.dependencyManager.analyzeDependencies(this.resolveTransitiveDependencies);
+            return;
+        }
+
+        long saved = this.analysisCache.load(this.dependencyManager);
+        if (saved >= 0) {
+            this.log.accept("Reused dependency analysis for unchanged dependencies (saved ~" + saved + "ms)");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        this.dependencyManager.analyzeDependencies(false);
+        try {
+            this.analysisCache.store(this.dependencyManager, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            this.log.accept("Unable to store dependency analysis: " + e.getMessage());
+        }
     }
 
     private void addProjectAsset() {
@@ -217,8 +301,25 @@ public class BuildTool {
     private File createJar(String baseName, Path dir) throws IOException {
         File out = new File(dir.toFile(), baseName + "-swarm.jar");
         out.getParentFile().mkdirs();
-        ZipExporter exporter = this.archive.as(ZipExporter.class);
-        exporter.exportTo(out, true);
+        if (this.incremental) {
+            IncrementalJarExporter exporter = new IncrementalJarExporter(this.archive)
+                    .storeNestedJars(this.storeNestedJars);
+            exporter.exportTo(out);
+            this.log.accept("Reused " + exporter.getReusedEntries() + " unchanged entries of " + out.getName()
+                                    + ", wrote " + exporter.getWrittenEntries());
+            return out;
+        }
+        if (this.compressionThreads <= 1 && !this.storeNestedJars) {
+            ZipExporter exporter = this.archive.as(ZipExporter.class);
+            exporter.exportTo(out, true);
+            return out;
+        }
+        long start = System.currentTimeMillis();
+        new UberJarExporter(this.archive)
+                .storeNestedJars(this.storeNestedJars)
+                .parallelism(this.compressionThreads)
+                .exportTo(out);
+        this.log.accept("Wrote " + out.getName() + " in " + (System.currentTimeMillis() - start) + "ms");
         return out;
     }
 
@@ -266,7 +367,12 @@ public class BuildTool {
     }
 
     private void populateUberJarMavenRepository() throws Exception {
-        if ( this.bundleDependencies ) {
+        if ( this.bundleDependencies && this.dependencyLayer != null ) {
+            DependencyLayerWriter layer = new DependencyLayerWriter(this.dependencyLayer);
+            this.dependencyManager.populateUberJarMavenRepository( this.archive, layer );
+            this.log.accept("Wrote " + layer.getWrittenArtifacts() + " artifacts (" + (layer.getWrittenBytes() / 1024) + "kB) to "
+                                    + layer.getDirectory() + ", " + layer.getReusedArtifacts() + " already present");
+        } else if ( this.bundleDependencies ) {
             this.dependencyManager.populateUberJarMavenRepository( this.archive );
         } else {
             this.dependencyManager.populateUserMavenRepository();
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.wildfly.swarm.bootstrap.util.AtomicFiles;
+import org.wildfly.swarm.bootstrap.util.Digests;
+
+/**
+ * Dependency analysis results persisted between builds, so that a build
+ * with the same dependencies skips reading any of their jars.
+ *
+ * <p>Results are keyed by the coordinates and scope of every dependency
+ * together with the path, size and modification time of its file. Builds
+ * with unresolved dependencies are not cached.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class DependencyAnalysisCache {
+
+    private static final String FORMAT = "1";
+
+    public DependencyAnalysisCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Restore the analysis of <code>manager</code>'s dependencies, if it was stored.
+     *
+     * @return The time the stored analysis took originally, or <code>-1</code> if there was none.
+     */
+    public long load(DependencyManager manager) {
+        String key = key(manager);
+        if (key == null || !this.file.isFile()) {
+            return -1;
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(this.file.toPath())) {
+            props.load(in);
+        } catch (IOException e) {
+            return -1;
+        }
+        if (!key.equals(props.getProperty("key"))) {
+            return -1;
+        }
+
+        for (String each : values(props, "bootstrap-dependency.")) {
+            for (ArtifactSpec dep : manager.getDependencies()) {
+                if (dep.mavenGav().equals(each)) {
+                    manager.getBootstrapDependencies().add(dep);
+                }
+            }
+        }
+        for (String each : values(props, "module-dependency.")) {
+            manager.getModuleDependencies().add(ArtifactSpec.fromMscGav(each));
+        }
+        manager.getBootstrapModules().addAll(values(props, "bootstrap-module."));
+        manager.getProvidedGAVs().addAll(values(props, "provided."));
+        for (String each : props.stringPropertyNames()) {
+            if (each.startsWith("mapping.")) {
+                manager.getProvidedGAVToModuleMappings().put(each.substring("mapping.".length()), props.getProperty(each));
+            }
+        }
+        return Long.parseLong(props.getProperty("analysis-ms", "0"));
+    }
+
+    public void store(DependencyManager manager, long analysisMillis) throws IOException {
+        String key = key(manager);
+        if (key == null) {
+            return;
+        }
+
+        Properties props = new Properties();
+        props.setProperty("key", key);
+        props.setProperty("analysis-ms", Long.toString(analysisMillis));
+        int i = 0;
+        for (ArtifactSpec each : manager.getBootstrapDependencies()) {
+            props.setProperty("bootstrap-dependency." + (i++), each.mavenGav());
+        }
+        i = 0;
+        for (ArtifactSpec each : manager.getModuleDependencies()) {
+            props.setProperty("module-dependency." + (i++), each.mscGav());
+        }
+        i = 0;
+        for (String each : manager.getBootstrapModules()) {
+            props.setProperty("bootstrap-module." + (i++), each);
+        }
+        i = 0;
+        for (String each : manager.getProvidedGAVs()) {
+            props.setProperty("provided." + (i++), each);
+        }
+        for (Map.Entry<String, String> each : manager.getProvidedGAVToModuleMappings().entrySet()) {
+            props.setProperty("mapping." + each.getKey(), each.getValue());
+        }
+
+        // never leave a truncated file behind, as it would be restored as a partial analysis
+        AtomicFiles.write(this.file.toPath(), (tmp) -> {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "Generated by WildFly Swarm");
+            }
+        });
+    }
+
+    private static List<String> values(Properties props, String prefix) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; props.containsKey(prefix + i); ++i) {
+            values.add(props.getProperty(prefix + i));
+        }
+        return values;
+    }
+
+    private static String key(DependencyManager manager) {
+        MessageDigest digest;
+        try {
+            digest = Digests.create("SHA-1");
+        } catch (IOException e) {
+            return null;
+        }
+        update(digest, FORMAT);
+
+        List<ArtifactSpec> dependencies = new ArrayList<>(manager.getDependencies());
+        dependencies.sort(Comparator.comparing(ArtifactSpec::toString));
+        for (ArtifactSpec each : dependencies) {
+            if (each.file == null) {
+                return null;
+            }
+            update(digest, each.toString());
+            update(digest, each.file.getAbsolutePath());
+            update(digest, each.file.length() + ":" + each.file.lastModified());
+        }
+
+        return Digests.hex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private final File file;
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.wildfly.swarm.bootstrap.util.AtomicFiles;
+import org.wildfly.swarm.bootstrap.util.DependencyLayer;
+
+/**
+ * Writes the artifacts of a thin uber-jar to a content-addressed directory,
+ * and the {@link DependencyLayer#INDEX} locating them.
+ *
+ * <p>Artifacts already present in the directory are not copied again, so
+ * the directory can accumulate the artifacts of several applications.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class DependencyLayerWriter {
+
+    public DependencyLayerWriter(Path dir) {
+        this.dir = dir;
+    }
+
+    public Path getDirectory() {
+        return this.dir;
+    }
+
+    /**
+     * @param path The path the artifact would have within the uber-jar.
+     * @param file The artifact.
+     */
+    public void add(String path, File file) throws IOException {
+        String digest = DependencyLayer.digest(file.toPath());
+        Path target = DependencyLayer.path(this.dir, digest, path);
+
+        if (Files.isRegularFile(target) && Files.size(target) == file.length()) {
+            ++this.reused;
+        } else {
+            AtomicFiles.write(target, (tmp) -> Files.copy(file.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING));
+            ++this.written;
+            this.writtenBytes += file.length();
+        }
+
+        this.index.put(path, digest + " " + file.length() + " " + path);
+    }
+
+    public Asset getIndex() {
+        StringBuilder index = new StringBuilder();
+        for (String each : this.index.values()) {
+            index.append(each).append('\n');
+        }
+        return new StringAsset(index.toString());
+    }
+
+    public int getWrittenArtifacts() {
+        return this.written;
+    }
+
+    public long getWrittenBytes() {
+        return this.writtenBytes;
+    }
+
+    public int getReusedArtifacts() {
+        return this.reused;
+    }
+
+    private final Path dir;
+
+    private final Map<String, String> index = new TreeMap<>();
+
+    private int written;
+
+    private long writtenBytes;
+
+    private int reused;
+}
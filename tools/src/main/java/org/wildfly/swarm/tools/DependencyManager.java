@@ -28,13 +28,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.wildfly.swarm.bootstrap.util.DependencyLayer;
 import org.wildfly.swarm.bootstrap.util.WildFlySwarmApplicationConf;
 import org.wildfly.swarm.bootstrap.util.WildFlySwarmBootstrapConf;
 import org.wildfly.swarm.bootstrap.util.WildFlySwarmDependenciesConf;
@@ -66,6 +71,10 @@ public class DependencyManager {
 
     private final Map<String, String> providedGAVToModuleMappings = new HashMap<>();
 
+    private final Map<File, JarMetadata> metadata = new ConcurrentHashMap<>();
+
+    private int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+
     public DependencyManager() {
     }
 
@@ -110,15 +119,47 @@ public class DependencyManager {
 
     }
 
+    /**
+     * Number of jars read at the same time while analyzing dependencies.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     protected void analyzeDependencies(boolean resolveTransitive) throws Exception {
-        if (resolveTransitive) {
-            Set<ArtifactSpec> newDeps = this.resolver.resolveAll(this.dependencies);
-            this.dependencies.clear();
-            this.dependencies.addAll(newDeps);
-        } else {
-            for (ArtifactSpec each : this.dependencies) {
-                resolveArtifact(each);
+        // each jar is read once, on a bounded pool, while the next ones are being resolved
+        ExecutorService pool = Executors.newFixedThreadPool(this.parallelism, (r) -> {
+            Thread thread = new Thread(r, "swarm-dependency-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> scans = new ArrayList<>();
+            if (resolveTransitive) {
+                Set<ArtifactSpec> newDeps = this.resolver.resolveAll(this.dependencies);
+                this.dependencies.clear();
+                this.dependencies.addAll(newDeps);
+                for (ArtifactSpec each : this.dependencies) {
+                    scans.add(pool.submit(() -> metadata(each)));
+                }
+            } else {
+                for (ArtifactSpec each : this.dependencies) {
+                    resolveArtifact(each);
+                    scans.add(pool.submit(() -> metadata(each)));
+                }
+            }
+            for (Future<?> each : scans) {
+                try {
+                    each.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
             }
+        } finally {
+            pool.shutdownNow();
         }
 
         scanModulesDependencies();
@@ -138,7 +179,6 @@ public class DependencyManager {
     protected void scanBootstrapDependencies() {
         this.dependencies.stream()
                 .filter(this::isBootstrapDependency)
-                .map(spec -> spec.file)
                 .forEach(this::scanBootstrapDependency);
     }
 
@@ -155,19 +195,7 @@ public class DependencyManager {
             return true;
         }
 
-        try (JarFile jar = new JarFile(spec.file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while ( entries.hasMoreElements() ) {
-                String name = entries.nextElement().getName();
-                if ( name.startsWith( "modules/" ) && name.endsWith( "module.xml" ) ) {
-                    return true;
-                }
-
-            }
-        } catch (IOException e) {
-        }
-
-        return false;
+        return !metadata(spec).modules.isEmpty();
     }
 
     protected boolean isBootstrapDependency(ArtifactSpec spec) {
@@ -177,12 +205,8 @@ public class DependencyManager {
         if (!spec.type().equals("jar")) {
             return false;
         }
-        try (JarFile jar = new JarFile(spec.file)) {
-            ZipEntry entry = jar.getEntry("wildfly-swarm-bootstrap.conf");
-            if (entry != null) {
-                return true;
-            }
-        } catch (IOException e) {
+        if (metadata(spec).bootstrapModules != null) {
+            return true;
         }
 
         if (spec.groupId().equals(WILDFLY_SWARM_GROUP_ID) && spec.artifactId().equals(WILDFLY_SWARM_BOOTSTRAP_ARTIFACT_ID)) {
@@ -191,24 +215,10 @@ public class DependencyManager {
         return false;
     }
 
-    protected void scanBootstrapDependency(File file) {
-        try (JarFile jar = new JarFile(file)) {
-            ZipEntry entry = jar.getEntry("wildfly-swarm-bootstrap.conf");
-            if (entry != null) {
-
-                try (InputStream in = jar.getInputStream(entry)) {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-                    String line = null;
-
-                    while ((line = reader.readLine()) != null) {
-                        line = line.trim();
-                        if (!line.isEmpty()) {
-                            this.bootstrapModules.add(line);
-                        }
-                    }
-                }
-            }
-        } catch (IOException e) {
+    protected void scanBootstrapDependency(ArtifactSpec spec) {
+        List<String> modules = metadata(spec).bootstrapModules;
+        if (modules != null) {
+            this.bootstrapModules.addAll(modules);
         }
     }
 
@@ -311,34 +321,11 @@ public class DependencyManager {
     protected void analyzeModuleDependencies() {
         this.bootstrapDependencies.stream()
                 .filter(e -> e.type().equals("jar"))
-                .map(e -> e.file)
-                .flatMap(DependencyManager::findModuleXmls)
+                .flatMap(e -> metadata(e).modules.stream())
                 .forEach(this::analyzeModuleDependencies);
 
     }
 
-    protected static Stream<ModuleAnalyzer> findModuleXmls(File file) {
-        List<ModuleAnalyzer> analyzers = new ArrayList<>();
-        try {
-            JarFile jar = new JarFile(file);
-            Enumeration<JarEntry> entries = jar.entries();
-
-            while (entries.hasMoreElements()) {
-                JarEntry each = entries.nextElement();
-                String name = each.getName();
-
-                if (name.startsWith("modules/") && name.endsWith("module.xml")) {
-                    InputStream in = jar.getInputStream(each);
-                    analyzers.add(new ModuleAnalyzer(in));
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return analyzers.stream();
-    }
-
     protected void analyzeModuleDependencies(ModuleAnalyzer analyzer) {
         this.moduleDependencies.addAll(analyzer.getDependencies());
 
@@ -360,39 +347,33 @@ public class DependencyManager {
         if (spec.file == null) {
             return;
         }
-        try (JarFile jar = new JarFile(spec.file)) {
+        List<String> provided = metadata(spec).providedDependencies;
+        if (provided != null) {
+            // add ourselves
+            providedGAVs.add(spec.groupId() + ":" + spec.artifactId());
 
-            ZipEntry entry = jar.getEntry("provided-dependencies.txt");
-            if (entry != null) {
-                // add ourselves
-                providedGAVs.add(spec.groupId() + ":" + spec.artifactId());
-
-                if (spec.artifactId().endsWith("-modules")) {
-                    providedGAVs.add(spec.groupId() + ":" + spec.artifactId().substring(0, spec.artifactId().length() - "-modules".length()));
-                }
+            if (spec.artifactId().endsWith("-modules")) {
+                providedGAVs.add(spec.groupId() + ":" + spec.artifactId().substring(0, spec.artifactId().length() - "-modules".length()));
+            }
 
-                try (InputStream in = jar.getInputStream(entry)) {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-                    String line = null;
-
-                    // add everything mentioned in the file
-                    while ((line = reader.readLine()) != null) {
-                        line = line.trim();
-                        if (line.length() > 0) {
-                            String[] parts = line.split("\\|");
-                            if (parts.length > 1) {
-                                this.providedGAVToModuleMappings.put(parts[0], parts[1]);
-                            }
-                            providedGAVs.add(parts[0].trim());
-                        }
-                    }
+            // add everything mentioned in the file
+            for (String line : provided) {
+                String[] parts = line.split("\\|");
+                if (parts.length > 1) {
+                    this.providedGAVToModuleMappings.put(parts[0], parts[1]);
                 }
+                providedGAVs.add(parts[0].trim());
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
+    protected JarMetadata metadata(ArtifactSpec spec) {
+        if (spec.file == null || !spec.type().equals("jar")) {
+            return JarMetadata.NONE;
+        }
+        return this.metadata.computeIfAbsent(spec.file, JarMetadata::read);
+    }
+
     protected ArtifactSpec resolveArtifact(ArtifactSpec spec) throws Exception {
         if (spec.file == null) {
             ArtifactSpec newArtifact = this.resolver.resolve(spec);
@@ -444,6 +425,16 @@ public class DependencyManager {
     }
 
     public void populateUberJarMavenRepository(Archive archive) throws Exception {
+        populateUberJarMavenRepository(archive, null);
+    }
+
+    /**
+     * Gather the artifacts the uber-jar needs, either into its <code>m2repo/</code>
+     * or, for a thin uber-jar, into a dependency layer it only indexes.
+     *
+     * @param layer The layer to write artifacts to, or <code>null</code> to bundle them.
+     */
+    public void populateUberJarMavenRepository(Archive archive, DependencyLayerWriter layer) throws Exception {
         for (ArtifactSpec dependency : this.dependencies) {
             if (!this.bootstrapDependencies.contains(dependency) && !this.moduleDependencies.contains(dependency)) {
                 dependency.shouldGather = false;
@@ -459,19 +450,23 @@ public class DependencyManager {
             }
 
             if (dependency.shouldGather) {
-                addArtifactToArchiveMavenRepository(archive, dependency);
+                gather(archive, layer, dependency);
             }
         }
 
         for (ArtifactSpec dependency : this.moduleDependencies) {
-            addArtifactToArchiveMavenRepository(archive, dependency);
+            gather(archive, layer, dependency);
         }
 
         for (ArtifactSpec dependency : this.bootstrapDependencies) {
             if (!isExplodedBootstrap(dependency)) {
-                addArtifactToArchiveMavenRepository(archive, dependency);
+                gather(archive, layer, dependency);
             }
         }
+
+        if (layer != null) {
+            archive.add(layer.getIndex(), DependencyLayer.INDEX);
+        }
     }
 
     public void populateUserMavenRepository() throws Exception {
@@ -500,4 +495,71 @@ public class DependencyManager {
     }
 
 
+    private void gather(Archive archive, DependencyLayerWriter layer, ArtifactSpec artifact) throws Exception {
+        if (layer == null) {
+            addArtifactToArchiveMavenRepository(archive, artifact);
+            return;
+        }
+
+        if (artifact.gathered) {
+            return;
+        }
+        artifact = resolveArtifact(artifact);
+
+        layer.add("m2repo/" + artifact.repoPath(true), artifact.file);
+
+        artifact.gathered = true;
+    }
+
+    /**
+     * Everything the analysis needs from a dependency jar, read in a single pass.
+     */
+    protected static class JarMetadata {
+
+        static final JarMetadata NONE = new JarMetadata();
+
+        static JarMetadata read(File file) {
+            JarMetadata metadata = new JarMetadata();
+            try (JarFile jar = new JarFile(file)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry each = entries.nextElement();
+                    String name = each.getName();
+
+                    if (name.startsWith("modules/") && name.endsWith("module.xml")) {
+                        try (InputStream in = jar.getInputStream(each)) {
+                            metadata.modules.add(new ModuleAnalyzer(in));
+                        }
+                    } else if (name.equals("wildfly-swarm-bootstrap.conf")) {
+                        metadata.bootstrapModules = readLines(jar, each);
+                    } else if (name.equals("provided-dependencies.txt")) {
+                        metadata.providedDependencies = readLines(jar, each);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return metadata;
+        }
+
+        private static List<String> readLines(JarFile jar, ZipEntry entry) throws IOException {
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(jar.getInputStream(entry)))) {
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        lines.add(line);
+                    }
+                }
+            }
+            return lines;
+        }
+
+        private final List<ModuleAnalyzer> modules = new ArrayList<>();
+
+        private List<String> bootstrapModules;
+
+        private List<String> providedDependencies;
+    }
 }
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.wildfly.swarm.bootstrap.util.AtomicFiles;
+import org.wildfly.swarm.bootstrap.util.Digests;
+
+/**
+ * Exports an archive over a jar previously exported from it, copying the
+ * compressed data of unchanged entries instead of compressing them again.
+ *
+ * <p>The <code>.entries</code> manifest kept next to the jar records the SHA-256
+ * digest of every entry. An entry is unchanged if its digest matches the one
+ * recorded for the previous jar's entry. File-backed entries (such as the
+ * artifacts of <code>m2repo/</code>) are not even read when their source file has
+ * the same path, size and modification time as recorded in the manifest. Without
+ * a manifest, every entry is written again.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class IncrementalJarExporter {
+
+    public static final String ENTRIES_SUFFIX = ".entries";
+
+    private static final String HASH = "hash.";
+
+    private static final String SOURCE = "source.";
+
+    public IncrementalJarExporter(Archive<?> archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Store nested jars uncompressed. Entries compressed differently in the
+     * previous jar are written again.
+     */
+    public IncrementalJarExporter storeNestedJars(boolean storeNestedJars) {
+        this.storeNestedJars = storeNestedJars;
+        return this;
+    }
+
+    public File exportTo(File out) throws IOException {
+        File entriesFile = new File(out.getParentFile(), out.getName() + ENTRIES_SUFFIX);
+
+        Properties sources = new Properties();
+        AtomicFiles.write(out.toPath(), (tmp) -> {
+            // the previous jar must be closed again before it is replaced
+            try (PreviousJar previous = openPrevious(out);
+                 UberJarWriter writer = new UberJarWriter(tmp)) {
+                Properties previousSources = new Properties();
+                if (previous != null && entriesFile.isFile()) {
+                    try (InputStream in = Files.newInputStream(entriesFile.toPath())) {
+                        previousSources.load(in);
+                    }
+                }
+                for (Map.Entry<ArchivePath, Node> each : this.archive.getContent().entrySet()) {
+                    String name = each.getKey().get().substring(1);
+                    Asset asset = each.getValue().getAsset();
+                    if (asset == null) {
+                        writer.directory(name);
+                    } else {
+                        write(writer, name, asset, previous, previousSources, sources);
+                    }
+                }
+            }
+            Files.deleteIfExists(entriesFile.toPath());
+        });
+
+        try (OutputStream stream = Files.newOutputStream(entriesFile.toPath())) {
+            sources.store(stream, "Generated by WildFly Swarm");
+        }
+        return out;
+    }
+
+    private static PreviousJar openPrevious(File out) {
+        if (!out.isFile()) {
+            return null;
+        }
+        try {
+            return new PreviousJar(out);
+        } catch (IOException e) {
+            // not a jar we can reuse, rebuild it entirely
+            return null;
+        }
+    }
+
+    public int getReusedEntries() {
+        return this.reused;
+    }
+
+    public int getWrittenEntries() {
+        return this.written;
+    }
+
+    private void write(UberJarWriter writer, String name, Asset asset, PreviousJar previous, Properties previousSources, Properties sources) throws IOException {
+        boolean stored = this.storeNestedJars && name.endsWith(".jar");
+        PreviousJar.Entry previousEntry = previous == null ? null : previous.getEntry(name);
+        if (previousEntry != null
+                && previousEntry.getMethod() != (stored ? ZipEntry.STORED : ZipEntry.DEFLATED)) {
+            previousEntry = null;
+        }
+
+        String fingerprint = null;
+        if (asset instanceof FileAsset) {
+            File source = ((FileAsset) asset).getSource();
+            fingerprint = source.getAbsolutePath() + "|" + source.length() + "|" + source.lastModified();
+            sources.setProperty(SOURCE + name, fingerprint);
+        }
+
+        String hash = previousHash(previousSources, name, previousEntry);
+        if (hash != null) {
+            if ((fingerprint != null && fingerprint.equals(previousSources.getProperty(SOURCE + name)))
+                    || hash.equals(sha256(asset, previousEntry.getSize()))) {
+                previous.copy(writer, name, previousEntry);
+                sources.setProperty(HASH + name, previousSources.getProperty(HASH + name));
+                ++this.reused;
+                return;
+            }
+        }
+
+        MessageDigest digest = Digests.create("SHA-256");
+        try (InputStream in = new DigestInputStream(asset.openStream(), digest)) {
+            long crc = stored ? writer.stored(name, in) : writer.deflated(name, in);
+            sources.setProperty(HASH + name, Digests.hex(digest.digest()) + "|" + Long.toHexString(crc));
+        }
+        ++this.written;
+    }
+
+    /**
+     * @return The SHA-256 digest recorded for the previous jar's entry, or <code>null</code>
+     * if none was recorded for that very entry.
+     */
+    private static String previousHash(Properties previousSources, String name, PreviousJar.Entry previousEntry) {
+        if (previousEntry == null) {
+            return null;
+        }
+        String recorded = previousSources.getProperty(HASH + name);
+        String crc = "|" + Long.toHexString(previousEntry.getCrc());
+        if (recorded == null || !recorded.endsWith(crc)) {
+            return null;
+        }
+        return recorded.substring(0, recorded.length() - crc.length());
+    }
+
+    /**
+     * @return The hex-encoded SHA-256 digest of an asset, or <code>null</code> if it is longer than <code>limit</code>.
+     */
+    private static String sha256(Asset asset, long limit) throws IOException {
+        MessageDigest digest = Digests.create("SHA-256");
+        long size = 0;
+        byte[] buf = new byte[8192];
+        try (InputStream in = asset.openStream()) {
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                digest.update(buf, 0, len);
+                size += len;
+                if (size > limit) {
+                    return null;
+                }
+            }
+        }
+        return Digests.hex(digest.digest());
+    }
+
+    private final Archive<?> archive;
+
+    private boolean storeNestedJars;
+
+    private int reused;
+
+    private int written;
+}
@@ -24,20 +24,33 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.jboss.shrinkwrap.descriptor.api.jbossmodule13.ArtifactType;
-import org.jboss.shrinkwrap.descriptor.api.jbossmodule13.ModuleDescriptor;
-import org.jboss.shrinkwrap.descriptor.api.jbossmodule13.ResourcesType;
-import org.jboss.shrinkwrap.descriptor.impl.jbossmodule13.ModuleDescriptorImpl;
-import org.jboss.shrinkwrap.descriptor.spi.node.Node;
-import org.jboss.shrinkwrap.descriptor.spi.node.NodeImporter;
-import org.jboss.shrinkwrap.descriptor.spi.node.dom.XmlDomNodeImporterImpl;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
+ * Reads the name, slot and artifacts of a <code>module.xml</code> in a single
+ * streaming pass, without building a document.
+ *
  * @author Bob McWhirter
  */
 public class ModuleAnalyzer {
 
-    private ModuleDescriptorImpl module;
+    private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    private boolean module;
+
+    private String name;
+
+    private String slot;
+
+    private final List<String> artifacts = new ArrayList<>();
 
     public ModuleAnalyzer(File f) throws IOException {
         this(new FileInputStream(f));
@@ -48,42 +61,77 @@ public class ModuleAnalyzer {
     }
 
     public ModuleAnalyzer(InputStream in) throws IOException {
-        NodeImporter importer = new XmlDomNodeImporterImpl();
-        Node node = importer.importAsNode(in, true);
-
-        String rootName = node.getName();
+        try {
+            XMLStreamReader reader = FACTORY.get().createXMLStreamReader(in);
+            try {
+                parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
 
-        if ( rootName.equals( "module" ) ) {
-            this.module = new ModuleDescriptorImpl(null, node);
+    private void parse(XMLStreamReader reader) throws XMLStreamException {
+        // depth 1 is <module>, 2 is <resources>, 3 is <artifact>
+        int depth = 0;
+        boolean inResources = false;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    ++depth;
+                    String element = reader.getLocalName();
+                    if (depth == 1) {
+                        if (!element.equals("module")) {
+                            return;
+                        }
+                        this.module = true;
+                        this.name = reader.getAttributeValue(null, "name");
+                        this.slot = reader.getAttributeValue(null, "slot");
+                    } else if (depth == 2) {
+                        inResources = element.equals("resources");
+                    } else if (depth == 3 && inResources && element.equals("artifact")) {
+                        String artifact = reader.getAttributeValue(null, "name");
+                        if (artifact != null) {
+                            this.artifacts.add(artifact);
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    --depth;
+                    break;
+                default:
+                    break;
+            }
         }
-        in.close();
     }
 
     public String getName() {
-        if ( this.module == null ) {
+        if ( !this.module ) {
             return "UNKNOWN";
         }
-        return this.module.getName();
+        return this.name;
     }
 
     public String getSlot() {
-        if ( this.module.getSlot() == null ) {
+        if ( this.slot == null ) {
             return "main";
         }
-        return this.module.getSlot();
+        return this.slot;
     }
 
     public List<ArtifactSpec> getDependencies() {
-        if ( this.module == null ) {
+        if ( !this.module ) {
             return Collections.emptyList();
         }
 
-        List<ArtifactType<ResourcesType<ModuleDescriptor>>> artifacts = this.module.getOrCreateResources().getAllArtifact();
-
         List<ArtifactSpec> dependencies = new ArrayList<>();
 
-        for (ArtifactType<ResourcesType<ModuleDescriptor>> artifact : artifacts) {
-            ArtifactSpec dep = ArtifactSpec.fromMscGav(artifact.getName());
+        for (String artifact : this.artifacts) {
+            ArtifactSpec dep = ArtifactSpec.fromMscGav(artifact);
             dep.shouldGather = true;
             dependencies.add( dep );
         }
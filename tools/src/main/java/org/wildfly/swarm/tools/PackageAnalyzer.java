@@ -24,7 +24,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.wildfly.swarm.tools.PackageDetector;
 
@@ -33,13 +32,36 @@ import org.wildfly.swarm.tools.PackageDetector;
  */
 public class PackageAnalyzer {
 
+    private static PackageMatcher FRACTION_MATCHER;
+
     private final File source;
 
+    private final PackageCache cache;
+
     public PackageAnalyzer(File source) {
+        this(source, PackageCache.defaultCache());
+    }
+
+    /**
+     * @param cache The cache of the packages of nested jars, or <code>null</code> to scan them all.
+     */
+    public PackageAnalyzer(File source, PackageCache cache) {
         this.source = source;
+        this.cache = cache;
+    }
+
+    public PackageCache getCache() {
+        return this.cache;
     }
 
-    private Map<String, Set<String>> fractionPackages() throws IOException {
+    private static synchronized PackageMatcher fractionMatcher() throws IOException {
+        if (FRACTION_MATCHER == null) {
+            FRACTION_MATCHER = new PackageMatcher(fractionPackages());
+        }
+        return FRACTION_MATCHER;
+    }
+
+    static Map<String, Set<String>> fractionPackages() throws IOException {
         final Properties properties = new Properties();
         try (InputStream in =
                      PackageAnalyzer.class.getResourceAsStream("/org/wildfly/swarm/tools/fraction-packages.properties")) {
@@ -61,20 +83,12 @@ public class PackageAnalyzer {
     }
 
     public Set<String> detectNeededFractions() throws IOException {
-        final Map<String, Set<String>> fractionPackages = fractionPackages();
-        final Set<String> detectedPackages = PackageDetector
-                .detectPackages( this.source )
+        final PackageMatcher matcher = fractionMatcher();
+        final Set<String> detectedPackages = (this.cache == null
+                ? PackageDetector.detectPackages( this.source )
+                : PackageDetector.detectPackages( this.source, this.cache ))
                 .keySet();
-        final Set<String> neededFractions = new HashSet<>();
-
-        for (Map.Entry<String, Set<String>> fraction : fractionPackages.entrySet()) {
-            neededFractions.addAll(fraction.getValue()
-                    .stream()
-                    .filter(detectedPackages::contains)
-                    .map(pkg -> fraction.getKey())
-                    .collect(Collectors.toList()));
-        }
 
-        return neededFractions;
+        return matcher.matchAll(detectedPackages);
     }
 }
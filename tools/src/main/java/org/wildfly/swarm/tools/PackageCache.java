@@ -0,0 +1,127 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.wildfly.swarm.bootstrap.util.AtomicFiles;
+
+/**
+ * On-disk cache of the packages referenced by a jar, so that dependency jars
+ * which never change are only scanned once per machine.
+ *
+ * <p>Jars are keyed by their name, CRC-32 and size, all of which are known
+ * from the enclosing archive's directory without reading the jar itself.
+ * Entries live in a subdirectory named after the tools version and
+ * {@link PackageDetector#COLLECTOR_VERSION}, so results of an older
+ * detector are never reused.</p>
+ *
+ * <p>The cache is off unless <code>swarm.package.cache</code> names its
+ * directory.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class PackageCache {
+
+    public static final String CACHE_DIR_PROPERTY = "swarm.package.cache";
+
+    static final String VERSION = toolsVersion() + "-" + PackageDetector.COLLECTOR_VERSION;
+
+    /**
+     * @return The cache in <code>swarm.package.cache</code>, or <code>null</code> if it is not set.
+     */
+    public static PackageCache defaultCache() {
+        String dir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (dir == null || dir.trim().isEmpty()) {
+            return null;
+        }
+        return new PackageCache(Paths.get(dir));
+    }
+
+    public PackageCache(Path dir) {
+        this.dir = dir.resolve(VERSION);
+    }
+
+    private static String toolsVersion() {
+        try (InputStream in = PackageCache.class.getResourceAsStream("/META-INF/maven/org.wildfly.swarm/tools/pom.properties")) {
+            if (in != null) {
+                Properties props = new Properties();
+                props.load(in);
+                return props.getProperty("version", "unknown");
+            }
+        } catch (IOException e) {
+            // fall through
+        }
+        return "unknown";
+    }
+
+    public String key(String jarName, long crc, long size) {
+        String name = jarName.substring(jarName.lastIndexOf('/') + 1);
+        return name + "-" + String.format("%08x", crc) + "-" + size;
+    }
+
+    /**
+     * @return The packages referenced by the jar, or <code>null</code> if it has not been cached.
+     */
+    public Set<String> get(String key) {
+        Path file = this.dir.resolve(key + ".packages");
+        if (Files.isRegularFile(file)) {
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                ++this.hits;
+                return new HashSet<>(lines);
+            } catch (IOException e) {
+                // unreadable, scan again
+            }
+        }
+        ++this.misses;
+        return null;
+    }
+
+    public void put(String key, Set<String> packages) {
+        Path file = this.dir.resolve(key + ".packages");
+        try {
+            AtomicFiles.write(file, (tmp) -> Files.write(tmp, new TreeSet<>(packages), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // caching is best-effort
+            System.err.println("Unable to cache packages of " + key + ": " + e.getMessage());
+        }
+    }
+
+    public int getHits() {
+        return this.hits;
+    }
+
+    public int getMisses() {
+        return this.misses;
+    }
+
+    private final Path dir;
+
+    private int hits;
+
+    private int misses;
+}
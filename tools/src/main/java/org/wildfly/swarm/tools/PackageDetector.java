@@ -16,6 +16,7 @@
 package org.wildfly.swarm.tools;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -30,10 +31,9 @@ import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -42,74 +42,185 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
+/**
+ * Detects the packages referenced by the classes of a directory, jar or war,
+ * including the jars nested within it.
+ *
+ * <p>Nested jars are read straight from their entry's stream. Classes are read
+ * in batches and parsed in parallel, each thread filling its own collector.</p>
+ */
 public class PackageDetector {
+
+    /**
+     * Bump whenever {@link PackageCollector} would report different packages for the same classes.
+     */
+    public static final int COLLECTOR_VERSION = 1;
+
+    private static final long BATCH_SIZE = 16 * 1024 * 1024;
+
     public static Map<String, Set<String>> detectPackages(final File file) throws IOException {
         final PackageCollector visitor = new PackageCollector();
 
         return detectPackages(file, visitor);
     }
 
+    /**
+     * Detect packages, taking those of the jars nested in <code>file</code> from
+     * <code>cache</code> when possible. The source classes of cached jars are not
+     * recorded.
+     */
+    public static Map<String, Set<String>> detectPackages(final File file,
+                                                          final PackageCache cache) throws IOException {
+        return detectPackages(file, new PackageCollector(), ForkJoinPool.commonPool(), cache);
+    }
+
     protected static Map<String, Set<String>> detectPackages(final File file,
                                                              final PackageCollector visitor) throws IOException {
+        return detectPackages(file, visitor, ForkJoinPool.commonPool(), null);
+    }
+
+    static Map<String, Set<String>> detectPackages(final File file,
+                                                   final PackageCollector visitor,
+                                                   final ForkJoinPool pool,
+                                                   final PackageCache cache) throws IOException {
+        final ClassBatch batch = new ClassBatch(visitor, pool);
+        detectPackages(file, batch, cache);
+        batch.flush();
+        return visitor.packageSources();
+    }
+
+    private static void detectPackages(final File file, final ClassBatch batch, final PackageCache cache) throws IOException {
         if (file.isDirectory()) {
-            return detectPackagesInDir(file, visitor);
+            detectPackagesInDir(file, batch);
         } else if ( file.getName().endsWith( ".jar" ) || file.getName().endsWith( ".war" ) ) {
-            return detectPackagesInZip(new ZipFile(file), visitor);
+            try (ZipFile zip = new ZipFile(file)) {
+                detectPackagesInZip(zip, batch, cache);
+            }
         } else {
             System.err.println( "Ignoring scanning of unknown file type: " + file.getName() );
-            return Collections.emptyMap();
         }
     }
 
-    protected static Map<String, Set<String>> detectPackagesInZip(final ZipFile file,
-                                                                  final PackageCollector visitor) throws IOException {
+    private static void detectPackagesInZip(final ZipFile file,
+                                            final ClassBatch batch,
+                                            final PackageCache cache) throws IOException {
         final Enumeration<? extends ZipEntry> entries = file.entries();
         while (entries.hasMoreElements()) {
             ZipEntry entry = entries.nextElement();
             String name = entry.getName();
 
             // TODO: accept wars, ears?
-            if (name.endsWith(".jar")) {
-                final File jarFile = File.createTempFile("swarmPackageDetector", ".jar");
-                jarFile.deleteOnExit();
-
-                try (InputStream in = file.getInputStream(entry);
-                     FileOutputStream out = new FileOutputStream(jarFile)) {
-                    IOUtils.copy(in, out);
+            if (name.endsWith(".jar") && cache != null) {
+                String key = cache.key(name, entry.getCrc(), entry.getSize());
+                Set<String> packages = cache.get(key);
+                if (packages == null) {
+                    ClassBatch nestedBatch = new ClassBatch(new PackageCollector(), batch.pool);
+                    try (ZipInputStream in = new ZipInputStream(file.getInputStream(entry))) {
+                        detectPackagesInZip(in, nestedBatch);
+                    }
+                    nestedBatch.flush();
+                    cache.put(key, nestedBatch.visitor.packages());
+                    batch.visitor.merge(nestedBatch.visitor);
+                } else {
+                    batch.visitor.addPackages(packages);
+                }
+            } else if (name.endsWith(".jar")) {
+                try (ZipInputStream in = new ZipInputStream(file.getInputStream(entry))) {
+                    detectPackagesInZip(in, batch);
                 }
-
-                detectPackagesInZip(new ZipFile(jarFile), visitor);
             } else if (name.endsWith(".class")) {
                 try (InputStream in = file.getInputStream(entry)) {
-                    new ClassReader(in).accept(visitor, 0);
+                    batch.add(IOUtils.toByteArray(in));
                 }
             }
         }
+    }
 
-        return visitor.packageSources();
+    private static void detectPackagesInZip(final ZipInputStream in,
+                                            final ClassBatch batch) throws IOException {
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            String name = entry.getName();
+
+            if (name.endsWith(".jar")) {
+                // the nested stream must not close its parent
+                try (ZipInputStream nested = new ZipInputStream(new CloseShieldInputStream(in))) {
+                    detectPackagesInZip(nested, batch);
+                }
+            } else if (name.endsWith(".class")) {
+                batch.add(IOUtils.toByteArray(in));
+            }
+        }
     }
 
-    protected static Map<String, Set<String>> detectPackagesInDir(final File dir,
-                                                                  final PackageCollector visitor) throws IOException {
+    private static void detectPackagesInDir(final File dir,
+                                            final ClassBatch batch) throws IOException {
         final File[] entries = dir.listFiles();
         for (File entry : entries) {
             String name = entry.getName();
 
 
             if ( name.endsWith( ".class" ) ) {
-                try (InputStream in = new FileInputStream(entry)) {
-                    new ClassReader(in).accept(visitor, 0);
-                }
+                batch.add(Files.readAllBytes(entry.toPath()));
             } else {
-                detectPackages( entry, visitor );
+                detectPackages( entry, batch, null );
             }
         }
+    }
 
-        return visitor.packageSources();
+    /**
+     * Class files read but not yet parsed, bounded in size so large archives
+     * are not held in memory all at once.
+     */
+    private static class ClassBatch {
+
+        ClassBatch(PackageCollector visitor, ForkJoinPool pool) {
+            this.visitor = visitor;
+            this.pool = pool;
+        }
+
+        void add(byte[] classBytes) throws IOException {
+            this.classes.add(classBytes);
+            this.size += classBytes.length;
+            if (this.size >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (this.classes.isEmpty()) {
+                return;
+            }
+            try {
+                PackageCollector collected = this.pool.submit(() -> this.classes.parallelStream()
+                        .collect(PackageCollector::new,
+                                 (collector, bytes) -> new ClassReader(bytes).accept(collector, 0),
+                                 PackageCollector::merge))
+                        .get();
+                this.visitor.merge(collected);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            this.classes.clear();
+            this.size = 0;
+        }
+
+        private final PackageCollector visitor;
+
+        private final ForkJoinPool pool;
+
+        private final List<byte[]> classes = new ArrayList<>();
+
+        private long size;
     }
 
     static class PackageCollector extends ClassVisitor {
@@ -126,6 +237,25 @@ public class PackageDetector {
             super(Opcodes.ASM5);
         }
 
+        void addPackages(Set<String> packages) {
+            for (String each : packages) {
+                if (!this.packages.containsKey(each)) {
+                    this.packages.put(each, new HashSet<>());
+                }
+            }
+        }
+
+        void merge(PackageCollector other) {
+            for (Map.Entry<String, Set<String>> each : other.packages.entrySet()) {
+                Set<String> sources = this.packages.get(each.getKey());
+                if (sources == null) {
+                    this.packages.put(each.getKey(), each.getValue());
+                } else {
+                    sources.addAll(each.getValue());
+                }
+            }
+        }
+
         @Override
         public void visit(final int __,
                           final int ___,
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prefix trie over package names, split on <code>.</code>, matching a package
+ * against every pattern in time proportional to the package name's length.
+ *
+ * <p>A pattern matches the package it names and all of its sub-packages, so
+ * <code>javax.ws</code> matches <code>javax.ws.rs</code> but not <code>javax.wsdl</code>.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class PackageMatcher {
+
+    public PackageMatcher(Map<String, ? extends Collection<String>> patternsByFraction) {
+        for (Map.Entry<String, ? extends Collection<String>> fraction : patternsByFraction.entrySet()) {
+            for (String pattern : fraction.getValue()) {
+                pattern = pattern.trim();
+                if (!pattern.isEmpty()) {
+                    add(pattern, fraction.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The fractions with a pattern matching <code>packageName</code>.
+     */
+    public Set<String> match(String packageName) {
+        Set<String> matches = null;
+        Node node = this.root;
+        int start = 0;
+        while (node != null && start <= packageName.length()) {
+            int end = packageName.indexOf('.', start);
+            if (end < 0) {
+                end = packageName.length();
+            }
+            node = node.children.get(packageName.substring(start, end));
+            if (node != null && !node.fractions.isEmpty()) {
+                if (matches == null) {
+                    matches = new HashSet<>();
+                }
+                matches.addAll(node.fractions);
+            }
+            start = end + 1;
+        }
+        return matches == null ? Collections.emptySet() : matches;
+    }
+
+    /**
+     * @return The fractions with a pattern matching any of <code>packageNames</code>.
+     */
+    public Set<String> matchAll(Collection<String> packageNames) {
+        Set<String> matches = new HashSet<>();
+        for (String each : packageNames) {
+            matches.addAll(match(each));
+        }
+        return matches;
+    }
+
+    private void add(String pattern, String fraction) {
+        Node node = this.root;
+        for (String segment : pattern.split("\\.")) {
+            node = node.children.computeIfAbsent(segment, (k) -> new Node());
+        }
+        node.fractions.add(fraction);
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+
+        private final Set<String> fractions = new HashSet<>();
+    }
+
+    private final Node root = new Node();
+}
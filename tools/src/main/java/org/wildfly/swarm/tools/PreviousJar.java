@@ -0,0 +1,191 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The central directory of a jar about to be replaced, with its entries' raw
+ * data read through a {@link FileChannel}.
+ *
+ * <p>Unlike a mapping, the channel is released as soon as this is closed, so the
+ * jar can be replaced right afterwards, even on Windows. ZIP64 jars are not
+ * supported.</p>
+ *
+ * @author Bob McWhirter
+ */
+class PreviousJar implements Closeable {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+
+    private static final int END_HEADER_SIG = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int END_HEADER_SIZE = 22;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    PreviousJar(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            readCentralDirectory();
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    Entry getEntry(String name) {
+        return this.entries.get(name);
+    }
+
+    /**
+     * Copy the raw (possibly still compressed) bytes of an entry to a writer.
+     */
+    void copy(UberJarWriter writer, String name, Entry entry) throws IOException {
+        ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIG) {
+            throw new IOException("Invalid local header for " + name + " in " + this.file);
+        }
+        long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + u16(header, 26) + u16(header, 28);
+        writer.raw(name, entry.method, entry.crc, entry.size, this.channel, dataOffset, entry.compressedSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void readCentralDirectory() throws IOException {
+        long size = this.channel.size();
+        int tailSize = (int) Math.min(size, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(size - tailSize, tailSize);
+
+        int end = -1;
+        for (int pos = tailSize - END_HEADER_SIZE; pos >= 0; --pos) {
+            if (tail.getInt(pos) == END_HEADER_SIG) {
+                end = pos;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Not a jar file: " + this.file);
+        }
+
+        int total = u16(tail, end + 10);
+        long directorySize = u32(tail, end + 12);
+        long directoryOffset = u32(tail, end + 16);
+        if (total == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 jars are not supported: " + this.file);
+        }
+
+        ByteBuffer directory = read(directoryOffset, (int) directorySize);
+        int pos = 0;
+        for (int i = 0; i < total; ++i) {
+            if (directory.getInt(pos) != CENTRAL_HEADER_SIG) {
+                throw new IOException("Invalid central directory in " + this.file);
+            }
+            int nameLength = u16(directory, pos + 28);
+            byte[] name = new byte[nameLength];
+            ByteBuffer nameBuffer = directory.duplicate();
+            nameBuffer.position(pos + CENTRAL_HEADER_SIZE);
+            nameBuffer.get(name);
+
+            this.entries.put(new String(name, StandardCharsets.UTF_8),
+                             new Entry(u16(directory, pos + 10),
+                                       u32(directory, pos + 16),
+                                       u32(directory, pos + 20),
+                                       u32(directory, pos + 24),
+                                       u32(directory, pos + 42)));
+
+            pos += CENTRAL_HEADER_SIZE + nameLength + u16(directory, pos + 30) + u16(directory, pos + 32);
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + this.file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int u16(ByteBuffer buffer, int pos) {
+        return buffer.getShort(pos) & 0xFFFF;
+    }
+
+    private static long u32(ByteBuffer buffer, int pos) {
+        return buffer.getInt(pos) & 0xFFFFFFFFL;
+    }
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    static class Entry {
+
+        Entry(int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        int getMethod() {
+            return this.method;
+        }
+
+        long getCrc() {
+            return this.crc;
+        }
+
+        long getSize() {
+            return this.size;
+        }
+
+        private final int method;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long localHeaderOffset;
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.wildfly.swarm.bootstrap.util.AtomicFiles;
+
+/**
+ * Exports an archive as a jar, compressing its entries on several threads.
+ *
+ * <p>Entries are compressed into memory concurrently and written in the
+ * archive's order. Compression runs ahead of the entry being written by at most
+ * four entries per thread and {@link #maxBufferedBytes(long)} bytes; entries too
+ * large to buffer, or whose size is not known up front, are compressed while
+ * being written instead. Nested jars may
+ * be stored uncompressed instead: they are already compressed, and stored
+ * entries can be used directly from the mapped uber-jar at runtime.</p>
+ *
+ * <p>As with {@link UberJarWriter}, ZIP64 is not supported: jars over 4GB or
+ * with 65535 entries or more fail to export.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class UberJarExporter {
+
+    public UberJarExporter(Archive<?> archive) {
+        this.archive = archive;
+    }
+
+    public UberJarExporter storeNestedJars(boolean storeNestedJars) {
+        this.storeNestedJars = storeNestedJars;
+        return this;
+    }
+
+    public UberJarExporter parallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Bound the compressed data held in memory ahead of the entry being written.
+     */
+    public UberJarExporter maxBufferedBytes(long maxBufferedBytes) {
+        this.maxBufferedBytes = Math.max(0, maxBufferedBytes);
+        return this;
+    }
+
+    public File exportTo(File out) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, (r) -> {
+            Thread thread = new Thread(r, "uberjar-deflater");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            AtomicFiles.write(out.toPath(), (tmp) -> {
+                try (UberJarWriter writer = new UberJarWriter(tmp)) {
+                    Deque<Pending> pending = new ArrayDeque<>();
+                    for (Map.Entry<ArchivePath, Node> each : this.archive.getContent().entrySet()) {
+                        String name = each.getKey().get().substring(1);
+                        Asset asset = each.getValue().getAsset();
+                        long size = knownSize(asset);
+                        CompletableFuture<Deflated> deflated = null;
+                        if (asset != null && !isStored(name) && size >= 0 && size <= this.maxBufferedBytes / this.parallelism) {
+                            deflated = CompletableFuture.supplyAsync(() -> deflate(asset), executor);
+                        }
+                        pending.add(new Pending(name, asset, size, deflated));
+                        while (pending.size() > this.parallelism * 4 || buffered(pending) > this.maxBufferedBytes) {
+                            write(writer, pending.removeFirst());
+                        }
+                    }
+                    while (!pending.isEmpty()) {
+                        write(writer, pending.removeFirst());
+                    }
+                }
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        return out;
+    }
+
+    boolean isStored(String name) {
+        return this.storeNestedJars && name.endsWith(".jar");
+    }
+
+    /**
+     * @return The uncompressed size of a file or byte array asset, or <code>-1</code> if it is not known up front.
+     */
+    private static long knownSize(Asset asset) {
+        if (asset instanceof FileAsset) {
+            return ((FileAsset) asset).getSource().length();
+        }
+        if (asset instanceof ByteArrayAsset) {
+            return ((ByteArrayAsset) asset).getSource().length;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The bytes compressed, or being compressed, ahead of the entry being written.
+     */
+    private static long buffered(Deque<Pending> pending) {
+        long buffered = 0;
+        for (Pending each : pending) {
+            if (each.deflated == null) {
+                continue;
+            }
+            if (each.deflated.isDone() && !each.deflated.isCompletedExceptionally()) {
+                buffered += each.deflated.join().data.remaining();
+            } else {
+                buffered += each.size;
+            }
+        }
+        return buffered;
+    }
+
+    private void write(UberJarWriter writer, Pending entry) throws IOException {
+        if (entry.asset == null) {
+            writer.directory(entry.name);
+        } else if (entry.deflated == null) {
+            try (InputStream in = entry.asset.openStream()) {
+                if (isStored(entry.name)) {
+                    writer.stored(entry.name, in);
+                } else {
+                    writer.deflated(entry.name, in);
+                }
+            }
+        } else {
+            Deflated deflated;
+            try {
+                deflated = entry.deflated.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Unable to compress " + entry.name, e.getCause());
+            }
+            writer.raw(entry.name, ZipEntry.DEFLATED, deflated.crc, deflated.size, deflated.data);
+        }
+    }
+
+    private static Deflated deflate(Asset asset) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (InputStream in = asset.openStream();
+             DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater, 8192)) {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                out.write(buf, 0, len);
+                crc.update(buf, 0, len);
+                size += len;
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            deflater.end();
+        }
+        return new Deflated(crc.getValue(), size, ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private static class Pending {
+        Pending(String name, Asset asset, long size, CompletableFuture<Deflated> deflated) {
+            this.name = name;
+            this.asset = asset;
+            this.size = size;
+            this.deflated = deflated;
+        }
+
+        private final String name;
+
+        private final Asset asset;
+
+        private final long size;
+
+        private final CompletableFuture<Deflated> deflated;
+    }
+
+    private static class Deflated {
+        Deflated(long crc, long size, ByteBuffer data) {
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+
+        private final long crc;
+
+        private final long size;
+
+        private final ByteBuffer data;
+    }
+
+    private final Archive<?> archive;
+
+    private boolean storeNestedJars;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private long maxBufferedBytes = 64 * 1024 * 1024;
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Minimal jar writer able to copy already-compressed entries of another jar
+ * verbatim, which {@link java.util.zip.ZipOutputStream} cannot do.
+ *
+ * <p>Entry sizes and checksums are patched into the local headers once known,
+ * so no data descriptors are written. ZIP64 is not supported.</p>
+ *
+ * @author Bob McWhirter
+ */
+public class UberJarWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+
+    private static final int END_HEADER_SIG = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int END_HEADER_SIZE = 22;
+
+    private static final int VERSION = 20;
+
+    private static final int UTF8_FLAG = 0x0800;
+
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+    public UberJarWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.dosTime = dosTime(System.currentTimeMillis());
+    }
+
+    public void directory(String name) throws IOException {
+        if (!name.endsWith("/")) {
+            name = name + "/";
+        }
+        Entry entry = new Entry(name, ZipEntry.STORED, this.channel.position());
+        writeLocalHeader(entry);
+        this.entries.add(entry);
+    }
+
+    /**
+     * Copy an entry's data as-is.
+     *
+     * @param data The entry's data, compressed with <code>method</code>.
+     */
+    public void raw(String name, int method, long crc, long size, ByteBuffer data) throws IOException {
+        Entry entry = new Entry(name, method, this.channel.position());
+        entry.crc = crc;
+        entry.size = size;
+        entry.compressedSize = data.remaining();
+        writeLocalHeader(entry);
+        while (data.hasRemaining()) {
+            this.channel.write(data);
+        }
+        checkSize(entry);
+        this.entries.add(entry);
+    }
+
+    /**
+     * Copy an entry's data as-is from a region of another file.
+     *
+     * @param source The file holding the entry's data, compressed with <code>method</code>.
+     */
+    public void raw(String name, int method, long crc, long size, FileChannel source, long offset, long length) throws IOException {
+        Entry entry = new Entry(name, method, this.channel.position());
+        entry.crc = crc;
+        entry.size = size;
+        entry.compressedSize = length;
+        writeLocalHeader(entry);
+        long copied = 0;
+        while (copied < length) {
+            long count = source.transferTo(offset + copied, length - copied, this.channel);
+            if (count <= 0) {
+                throw new IOException("Unexpected end of data for " + name);
+            }
+            copied += count;
+        }
+        checkSize(entry);
+        this.entries.add(entry);
+    }
+
+    /**
+     * Write an entry uncompressed, so it can be mapped directly from the jar.
+     *
+     * @return The CRC-32 of the content.
+     */
+    public long stored(String name, InputStream in) throws IOException {
+        Entry entry = new Entry(name, ZipEntry.STORED, this.channel.position());
+        writeLocalHeader(entry);
+
+        long dataStart = this.channel.position();
+        try (CheckedInputStream checked = new CheckedInputStream(in, new CRC32())) {
+            OutputStream out = Channels.newOutputStream(this.channel);
+            entry.size = copy(checked, out);
+            entry.crc = checked.getChecksum().getValue();
+        }
+        entry.compressedSize = this.channel.position() - dataStart;
+
+        checkSize(entry);
+        patchLocalHeader(entry);
+        this.entries.add(entry);
+        return entry.crc;
+    }
+
+    /**
+     * Write an entry, compressing it.
+     *
+     * @return The CRC-32 of the uncompressed content.
+     */
+    public long deflated(String name, InputStream in) throws IOException {
+        Entry entry = new Entry(name, ZipEntry.DEFLATED, this.channel.position());
+        writeLocalHeader(entry);
+
+        long dataStart = this.channel.position();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (CheckedInputStream checked = new CheckedInputStream(in, new CRC32())) {
+            DeflaterOutputStream out = new DeflaterOutputStream(unclosable(Channels.newOutputStream(this.channel)), deflater, 8192);
+            entry.size = copy(checked, out);
+            out.finish();
+            out.flush();
+            entry.crc = checked.getChecksum().getValue();
+        } finally {
+            deflater.end();
+        }
+        entry.compressedSize = this.channel.position() - dataStart;
+
+        checkSize(entry);
+        patchLocalHeader(entry);
+        this.entries.add(entry);
+        return entry.crc;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.entries.size() >= 0xFFFF) {
+                throw new IOException("Too many entries for a jar without ZIP64: " + this.entries.size());
+            }
+            long directoryStart = this.channel.position();
+            for (Entry each : this.entries) {
+                writeCentralHeader(each);
+            }
+            long directorySize = this.channel.position() - directoryStart;
+            if (directoryStart > MAX_SIZE) {
+                throw new IOException("Jar too large to write without ZIP64");
+            }
+
+            ByteBuffer end = buffer(END_HEADER_SIZE);
+            end.putInt(END_HEADER_SIG);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) this.entries.size());
+            end.putShort((short) this.entries.size());
+            end.putInt((int) directorySize);
+            end.putInt((int) directoryStart);
+            end.putShort((short) 0);
+            write(end);
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        ByteBuffer header = buffer(LOCAL_HEADER_SIZE + entry.name.length);
+        header.putInt(LOCAL_HEADER_SIG);
+        header.putShort((short) VERSION);
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) entry.method);
+        header.putInt(this.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0);
+        header.put(entry.name);
+        write(header);
+    }
+
+    private void patchLocalHeader(Entry entry) throws IOException {
+        ByteBuffer sizes = buffer(12);
+        sizes.putInt((int) entry.crc);
+        sizes.putInt((int) entry.compressedSize);
+        sizes.putInt((int) entry.size);
+        sizes.flip();
+        long pos = entry.offset + 14;
+        while (sizes.hasRemaining()) {
+            pos += this.channel.write(sizes, pos);
+        }
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        ByteBuffer header = buffer(CENTRAL_HEADER_SIZE + entry.name.length);
+        header.putInt(CENTRAL_HEADER_SIG);
+        header.putShort((short) VERSION);
+        header.putShort((short) VERSION);
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) entry.method);
+        header.putInt(this.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(entry.isDirectory() ? 0x10 : 0);
+        header.putInt((int) entry.offset);
+        header.put(entry.name);
+        write(header);
+    }
+
+    private void checkSize(Entry entry) throws IOException {
+        if (entry.size > MAX_SIZE || entry.compressedSize > MAX_SIZE || entry.offset > MAX_SIZE) {
+            throw new IOException("Entry too large to write without ZIP64: " + new String(entry.name, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buf = new byte[8192];
+        long total = 0;
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+            total += len;
+        }
+        return total;
+    }
+
+    private static OutputStream unclosable(OutputStream out) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    private static int dosTime(long millis) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(millis);
+        int year = cal.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25
+                | (cal.get(Calendar.MONTH) + 1) << 21
+                | cal.get(Calendar.DAY_OF_MONTH) << 16
+                | cal.get(Calendar.HOUR_OF_DAY) << 11
+                | cal.get(Calendar.MINUTE) << 5
+                | cal.get(Calendar.SECOND) >> 1;
+    }
+
+    private static class Entry {
+        Entry(String name, int method, long offset) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+            this.offset = offset;
+        }
+
+        boolean isDirectory() {
+            return this.name.length > 0 && this.name[this.name.length - 1] == '/';
+        }
+
+        private final byte[] name;
+
+        private final int method;
+
+        private final long offset;
+
+        private long crc;
+
+        private long size;
+
+        private long compressedSize;
+    }
+
+    private final FileChannel channel;
+
+    private final int dosTime;
+
+    private final List<Entry> entries = new ArrayList<>();
+}
@@ -15,38 +15,78 @@
  */
 package org.wildfly.swarm.tools.exec;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
+ * Copies the output of a process to a stream and, optionally, a file, and
+ * counts down a latch once the server reports having started.
+ *
+ * <p>Output is copied as bytes and flushed in batches: once 8kB are pending,
+ * once 100ms have passed, or once the process has nothing more to say for now.
+ * Whole lines are written to the stream, so the output of several processes
+ * sharing a console does not interleave within lines; an incomplete line, such
+ * as a prompt or progress output, is only held back until the process has been
+ * quiet for a while. Started through {@link #start(BooleanSupplier)}, bridges
+ * poll their process on a small pool shared by all processes instead of each
+ * blocking a thread of their own, reading at most one buffer per turn.</p>
+ *
  * @author Bob McWhirter
  */
 public class IOBridge implements Runnable {
 
+    private static final byte[] STARTED_MARKER = "WFLYSRV0010".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int FLUSH_SIZE = 8192;
+
+    private static final long FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long POLL_INTERVAL = 20;
+
+    private static final ScheduledExecutorService PUMPS = Executors.newScheduledThreadPool(2, (r) -> {
+        Thread thread = new Thread(r, "swarm-process-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final InputStream in;
     private final OutputStream out;
 
-    private FileOutputStream fileOut;
+    private OutputStream fileOut;
 
-    private Exception error;
+    private volatile Exception error;
 
     private final CountDownLatch latch;
 
+    private final byte[] buffer = new byte[8192];
+
+    private byte[] pending = new byte[2 * FLUSH_SIZE];
+
+    private int pendingLength;
+
+    private int markerMatched;
+
+    private long lastFlush = System.nanoTime();
+
+    private volatile boolean closed;
+
     public IOBridge(CountDownLatch latch, InputStream in, OutputStream out, Path file) throws IOException {
         this.in = in;
         this.out = out;
         if ( file != null ) {
             Files.createDirectories( file.getParent() );
-            this.fileOut = new FileOutputStream( file.toFile() );
+            this.fileOut = new BufferedOutputStream(new FileOutputStream( file.toFile() ), 64 * 1024);
         }
         this.latch = latch;
     }
@@ -55,36 +95,143 @@ public class IOBridge implements Runnable {
         return this.error;
     }
 
+    /**
+     * Copy output on the shared pool until the end of the stream.
+     *
+     * @param alive Whether the process may still write; once it may not, an empty stream is read to its end.
+     */
+    public void start(BooleanSupplier alive) {
+        PUMPS.execute(() -> poll(alive));
+    }
+
+    private void poll(BooleanSupplier alive) {
+        if (this.closed) {
+            return;
+        }
+        try {
+            int available = this.in.available();
+            if (available > 0) {
+                int len = this.in.read(this.buffer, 0, Math.min(available, this.buffer.length));
+                if (len < 0) {
+                    finish();
+                    return;
+                }
+                process(len);
+                // one buffer per turn, so a chatty process cannot hold on to a shared thread
+                PUMPS.execute(() -> poll(alive));
+                return;
+            }
+            if (!alive.getAsBoolean()) {
+                // nothing buffered and no writer left: read the remainder, if any, to the end
+                int len;
+                while ((len = this.in.read(this.buffer)) >= 0) {
+                    process(len);
+                }
+                finish();
+                return;
+            }
+            flush(System.nanoTime() - this.lastFlush >= FLUSH_INTERVAL);
+            PUMPS.schedule(() -> poll(alive), POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Copy output on the calling thread until the end of the stream.
+     */
     @Override
     public void run() {
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-        String line = null;
         try {
-            while ((line = reader.readLine()) != null) {
-                processLine(line);
+            int len;
+            while ((len = this.in.read(this.buffer)) >= 0) {
+                process(len);
+                if (this.in.available() == 0) {
+                    // about to block, so an incomplete line could be held back indefinitely
+                    flush(true);
+                }
             }
+            finish();
         } catch (IOException e) {
-            this.error = e;
-            this.latch.countDown();
+            fail(e);
         }
     }
 
-    protected void processLine(String line) throws IOException {
-        out.write(line.getBytes());
-        out.write('\n');
-        out.flush();
-        if ( this.fileOut != null ) {
-            this.fileOut.write(line.getBytes());
-            this.fileOut.write('\n');
+    private void process(int len) throws IOException {
+        if (this.fileOut != null) {
+            this.fileOut.write(this.buffer, 0, len);
+        }
+
+        if (this.pendingLength + len > this.pending.length) {
+            byte[] grown = new byte[Math.max(this.pending.length * 2, this.pendingLength + len)];
+            System.arraycopy(this.pending, 0, grown, 0, this.pendingLength);
+            this.pending = grown;
+        }
+        System.arraycopy(this.buffer, 0, this.pending, this.pendingLength, len);
+        this.pendingLength += len;
+
+        if (this.latch.getCount() > 0) {
+            detectStarted(len);
+        }
+
+        if (this.pendingLength >= FLUSH_SIZE || System.nanoTime() - this.lastFlush >= FLUSH_INTERVAL) {
+            flush(this.pendingLength >= 8 * FLUSH_SIZE);
+        }
+    }
+
+    private void detectStarted(int len) {
+        // the marker does not start with a repetition of its own prefix, so a
+        // mismatch only ever needs to restart the match at the current byte
+        for (int i = 0; i < len; ++i) {
+            byte b = this.buffer[i];
+            if (b == STARTED_MARKER[this.markerMatched]) {
+                if (++this.markerMatched == STARTED_MARKER.length) {
+                    this.latch.countDown();
+                    this.markerMatched = 0;
+                    return;
+                }
+            } else {
+                this.markerMatched = (b == STARTED_MARKER[0]) ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * @param partial Whether to also write a trailing incomplete line.
+     */
+    private void flush(boolean partial) throws IOException {
+        int len = this.pendingLength;
+        if (!partial) {
+            while (len > 0 && this.pending[len - 1] != '\n') {
+                --len;
+            }
+        }
+        if (len > 0) {
+            this.out.write(this.pending, 0, len);
+            this.out.flush();
+            System.arraycopy(this.pending, len, this.pending, 0, this.pendingLength - len);
+            this.pendingLength -= len;
+            this.lastFlush = System.nanoTime();
+        }
+        if (this.fileOut != null) {
             this.fileOut.flush();
         }
-        if (line.contains("WFLYSRV0010")) {
-            this.latch.countDown();
+    }
+
+    private void finish() throws IOException {
+        flush(true);
+    }
+
+    private void fail(IOException e) {
+        if (this.closed) {
+            return;
         }
+        this.error = e;
+        this.latch.countDown();
     }
 
     public void close() throws IOException {
+        this.closed = true;
         this.in.close();
         if ( this.fileOut != null ) {
             this.fileOut.close();
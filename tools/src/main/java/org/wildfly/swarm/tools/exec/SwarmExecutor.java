@@ -18,11 +18,13 @@ package org.wildfly.swarm.tools.exec;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.exporter.ZipExporter;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.wildfly.swarm.bootstrap.util.BootstrapProperties;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -253,6 +255,11 @@ public class SwarmExecutor {
             cli.add("-D" + name + "=" + this.properties.get(name));
         }
 
+        // the process creates this file once its deployments are complete
+        Path readyFile = Files.createTempFile("swarm-ready", ".txt");
+        Files.delete(readyFile);
+        cli.add("-D" + BootstrapProperties.READY_FILE + "=" + readyFile);
+
         if (!this.classpath.isEmpty()) {
             cli.add("-classpath");
             cli.add(String.join(File.pathSeparator,
@@ -267,7 +274,8 @@ public class SwarmExecutor {
         return new SwarmProcess(
                 process,
                 this.stdout, this.stdoutFile,
-                this.stderr, this.stderrFile);
+                this.stderr, this.stderrFile,
+                readyFile);
     }
 
     private static String[] toStringArray(Map<String, String> env) {
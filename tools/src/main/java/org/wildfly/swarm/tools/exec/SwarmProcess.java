@@ -17,6 +17,7 @@ package org.wildfly.swarm.tools.exec;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -26,6 +27,8 @@ import java.util.concurrent.TimeUnit;
  */
 public class SwarmProcess {
 
+    private static final long READY_POLL_INTERVAL = 10;
+
     private final Process process;
 
     private final IOBridge stdout;
@@ -34,14 +37,24 @@ public class SwarmProcess {
 
     private final CountDownLatch latch;
 
+    private final Path readyFile;
+
     public SwarmProcess(Process process, OutputStream stdout, Path stdoutFile, OutputStream stderr, Path stderrFile) throws IOException {
+        this(process, stdout, stdoutFile, stderr, stderrFile, null);
+    }
+
+    /**
+     * @param readyFile The file the process creates once its deployments are complete, if any.
+     */
+    public SwarmProcess(Process process, OutputStream stdout, Path stdoutFile, OutputStream stderr, Path stderrFile, Path readyFile) throws IOException {
         this.process = process;
+        this.readyFile = readyFile;
         this.latch = new CountDownLatch(1);
         this.stdout = new IOBridge(this.latch, process.getInputStream(), stdout, stdoutFile);
         this.stderr = new IOBridge(this.latch, process.getErrorStream(), stderr, stderrFile);
 
-        new Thread(this.stdout).start();
-        new Thread(this.stderr).start();
+        this.stdout.start(process::isAlive);
+        this.stderr.start(process::isAlive);
     }
 
     public Exception getError() {
@@ -82,8 +95,27 @@ public class SwarmProcess {
         return process.exitValue();
     }
 
+    /**
+     * Wait until the process reports its deployments complete, or stops.
+     *
+     * <p>Completion is signalled through the ready file, or else detected in the
+     * output of processes which do not support it.</p>
+     */
     public void awaitDeploy(long timeout, TimeUnit timeUnit) throws InterruptedException {
-        this.latch.await(timeout, timeUnit);
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (!this.latch.await(READY_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (isReady() || !this.process.isAlive() || System.nanoTime() - deadline >= 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Whether the process signalled its deployments complete.
+     */
+    public boolean isReady() {
+        return this.latch.getCount() == 0 && getError() == null
+                || this.readyFile != null && Files.exists(this.readyFile);
     }
 
     public int stop() throws InterruptedException {
@@ -95,6 +127,14 @@ public class SwarmProcess {
         if (!this.process.waitFor(timeout, timeUnit)) {
             process.destroyForcibly();
         }
+        if (this.readyFile != null) {
+            try {
+                Files.deleteIfExists(this.readyFile);
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
         try {
             this.stdout.close();
         } catch (IOException e) {
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.jboss.shrinkwrap.api.asset.ClassLoaderAsset;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class DependencyAnalysisCacheTest {
+
+    private static final String BOOTSTRAP_JAR = "org.wildfly.swarm:bootstrap:1.0";
+
+    private static final String BOOTSTRAP_CONF = "test:bootstrap-conf:1.0";
+
+    private static final String MODULES_A = "test:with-modules-A:1.0";
+
+    private static final String PROVIDED_A = "test:provided-A:1.0";
+
+    private MockArtifactResolver resolver;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        resolver = new MockArtifactResolver();
+
+        resolver.add(BOOTSTRAP_JAR, (archive) -> {
+            archive.add(EmptyAsset.INSTANCE, "nothing");
+        });
+
+        resolver.add(BOOTSTRAP_CONF, (archive) -> {
+            archive.add(new StringAsset(
+                    "com.module1\n" +
+                            "com.module2\n"
+            ), "wildfly-swarm-bootstrap.conf");
+        });
+
+        resolver.add(MODULES_A, (archive) -> {
+            archive.add(new ClassLoaderAsset("module.xml"), "modules/org/jboss/as/webservices/main/module.xml");
+        });
+
+        resolver.add(PROVIDED_A, (archive) -> {
+            archive.add(new ClassLoaderAsset("keycloak-core-module.xml"), "modules/org/keyclaok/keycloak-core-module/main/module.xml");
+            archive.add(new StringAsset(
+                    "com.sun.mail:javax.mail\n" +
+                            "org.keycloak:keycloak-core|org.keycloak.keycloak-core-module"
+            ), "provided-dependencies.txt");
+        });
+
+        file = new File(Files.createTempDirectory("analysis-cache").toFile(), "analysis.properties");
+    }
+
+    @Test
+    public void testReusesAnalysis() throws Exception {
+        DependencyManager analyzed = manager();
+        analyzed.analyzeDependencies(false);
+        new DependencyAnalysisCache(file).store(analyzed, 42);
+
+        DependencyManager restored = manager();
+        assertThat(new DependencyAnalysisCache(file).load(restored)).isEqualTo(42);
+
+        assertThat(restored.getBootstrapDependencies()).isEqualTo(analyzed.getBootstrapDependencies());
+        assertThat(restored.getModuleDependencies()).isEqualTo(analyzed.getModuleDependencies());
+        assertThat(restored.getBootstrapModules()).isEqualTo(analyzed.getBootstrapModules());
+        assertThat(restored.getProvidedGAVs()).isEqualTo(analyzed.getProvidedGAVs());
+        assertThat(restored.getProvidedGAVToModuleMappings()).isEqualTo(analyzed.getProvidedGAVToModuleMappings());
+
+        assertThat(restored.getBootstrapModules()).contains("com.module1");
+        assertThat(restored.getModuleDependencies()).isNotEmpty();
+        assertThat(restored.getProvidedGAVToModuleMappings().get("org.keycloak:keycloak-core")).isEqualTo("org.keycloak.keycloak-core-module");
+    }
+
+    @Test
+    public void testIgnoresChangedDependencies() throws Exception {
+        DependencyManager analyzed = manager();
+        analyzed.analyzeDependencies(false);
+        new DependencyAnalysisCache(file).store(analyzed, 42);
+
+        File jar = resolver.resolve(ArtifactSpec.fromMscGav(BOOTSTRAP_CONF)).file;
+        jar.setLastModified(jar.lastModified() - 10000);
+
+        DependencyManager changed = manager();
+        assertThat(new DependencyAnalysisCache(file).load(changed)).isEqualTo(-1);
+        assertThat(changed.getBootstrapModules()).isEmpty();
+
+        DependencyManager added = manager();
+        added.addDependency(resolver.resolve(ArtifactSpec.fromMscGav("test:no-such-thing:1.0")));
+        assertThat(new DependencyAnalysisCache(file).load(added)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testStoreReplacesWholeFile() throws Exception {
+        Files.write(file.toPath(), "key=stale\nbootstrap-module.0=com.stale\n".getBytes());
+
+        DependencyManager analyzed = manager();
+        analyzed.analyzeDependencies(false);
+        new DependencyAnalysisCache(file).store(analyzed, 42);
+
+        assertThat(file.getParentFile().list()).containsOnly(file.getName());
+        DependencyManager restored = manager();
+        assertThat(new DependencyAnalysisCache(file).load(restored)).isEqualTo(42);
+        assertThat(restored.getBootstrapModules()).excludes("com.stale");
+    }
+
+    private DependencyManager manager() throws Exception {
+        DependencyManager manager = new DependencyManager();
+        manager.setArtifactResolvingHelper(resolver);
+        for (String each : new String[]{BOOTSTRAP_JAR, BOOTSTRAP_CONF, MODULES_A, PROVIDED_A}) {
+            manager.addDependency(resolver.resolve(ArtifactSpec.fromMscGav(each)));
+        }
+        return manager;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.wildfly.swarm.tools;
 
+import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -28,6 +29,7 @@ import org.jboss.shrinkwrap.api.asset.EmptyAsset;
 import org.jboss.shrinkwrap.api.asset.StringAsset;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.junit.After;
+import org.wildfly.swarm.bootstrap.util.DependencyLayer;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -234,6 +236,30 @@ public class DependencyManagerTest {
         assertThat(jars).contains("/m2repo/" + WS_INTEGRATION.repoPath(true));
     }
 
+    @Test
+    public void populateDependencyLayer() throws Exception {
+        manager.addDependency(BOOTSTRAP_JAR);
+        manager.addDependency(BOOTSTRAP_CONF);
+        manager.addDependency(MODULES_EMPTY_A);
+        manager.addDependency(MODULES_A);
+        manager.analyzeDependencies(false);
+
+        Archive archive = ShrinkWrap.create(JavaArchive.class);
+        DependencyLayerWriter layer = new DependencyLayerWriter(Files.createTempDirectory("dependency-layer"));
+
+        manager.populateUberJarMavenRepository(archive, layer);
+
+        Map<ArchivePath, Node> content = archive.getContent();
+
+        List<String> jars = content.keySet().stream().map(ArchivePath::get).filter((e) -> e.endsWith(".jar")).collect(Collectors.toList());
+        assertThat(jars).isEmpty();
+        assertThat(layer.getWrittenArtifacts()).isEqualTo(5);
+
+        DependencyLayer resolved = new DependencyLayer(layer.getDirectory(), archive.get(DependencyLayer.INDEX).getAsset().openStream());
+        assertThat(resolved.resolve("m2repo/" + MODULES_A.repoPath(true))).isNotNull();
+        assertThat(resolved.resolve("m2repo/" + CXF.repoPath(true))).isNotNull();
+    }
+
     @Test
     public void analyzeDependenciesWithProvided() throws Exception {
         manager.addDependency(PROVIDED_A);
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class IncrementalJarExporterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testReusesUnchangedEntries() throws Exception {
+        Path dir = tmp.getRoot().toPath();
+        byte[] artifact = new byte[128 * 1024];
+        new Random(42).nextBytes(artifact);
+        File artifactFile = dir.resolve("artifact-1.0.jar").toFile();
+        Files.write(artifactFile.toPath(), artifact);
+
+        File out = dir.resolve("app-swarm.jar").toFile();
+
+        IncrementalJarExporter first = new IncrementalJarExporter(archive(artifactFile, "one"));
+        first.exportTo(out);
+        assertThat(first.getReusedEntries()).isEqualTo(0);
+        assertThat(first.getWrittenEntries()).isEqualTo(3);
+
+        IncrementalJarExporter second = new IncrementalJarExporter(archive(artifactFile, "two"));
+        second.exportTo(out);
+        assertThat(second.getReusedEntries()).isEqualTo(2);
+        assertThat(second.getWrittenEntries()).isEqualTo(1);
+
+        try (JarFile jar = new JarFile(out)) {
+            assertThat(read(jar, "m2repo/org/test/artifact/1.0/artifact-1.0.jar")).isEqualTo(artifact);
+            assertThat(new String(read(jar, "app.txt"), StandardCharsets.UTF_8)).isEqualTo("two");
+            assertThat(new String(read(jar, "bootstrap.conf"), StandardCharsets.UTF_8)).isEqualTo("org.test:artifact");
+            assertThat(jar.getEntry("m2repo/org/").isDirectory()).isTrue();
+        }
+
+        // touching the source file without changing it still reuses its entry
+        artifactFile.setLastModified(artifactFile.lastModified() - 10000);
+        IncrementalJarExporter third = new IncrementalJarExporter(archive(artifactFile, "two"));
+        third.exportTo(out);
+        assertThat(third.getReusedEntries()).isEqualTo(3);
+        assertThat(third.getWrittenEntries()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSameCrcAndSizeIsWrittenAgain() throws Exception {
+        byte[] content = new byte[4096];
+        new Random(42).nextBytes(content);
+        byte[] other = collide(content);
+        assertThat(other).isNotEqualTo(content);
+        assertThat(crc(other)).isEqualTo(crc(content));
+
+        File out = tmp.getRoot().toPath().resolve("app-swarm.jar").toFile();
+        new IncrementalJarExporter(ShrinkWrap.create(JavaArchive.class).add(new ByteArrayAsset(content), "data.bin")).exportTo(out);
+
+        IncrementalJarExporter second = new IncrementalJarExporter(ShrinkWrap.create(JavaArchive.class).add(new ByteArrayAsset(other), "data.bin"));
+        second.exportTo(out);
+        assertThat(second.getReusedEntries()).isEqualTo(0);
+        try (JarFile jar = new JarFile(out)) {
+            assertThat(read(jar, "data.bin")).isEqualTo(other);
+        }
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Flip bits in the last five bytes of a copy of <code>bytes</code> so the
+     * result differs but has the same CRC-32, see ArtifactCacheTest.
+     */
+    private static byte[] collide(byte[] bytes) {
+        int offset = bytes.length - 5;
+        long base = crc(new byte[bytes.length]);
+        long[] values = new long[40];
+        long[] masks = new long[40];
+        for (int i = 0; i < 40; ++i) {
+            byte[] delta = new byte[bytes.length];
+            delta[offset + i / 8] = (byte) (1 << (i % 8));
+            long value = crc(delta) ^ base;
+            long mask = 1L << i;
+            for (int j = 0; j < i; ++j) {
+                if ((value ^ values[j]) < value) {
+                    value ^= values[j];
+                    mask ^= masks[j];
+                }
+            }
+            if (value == 0) {
+                byte[] result = bytes.clone();
+                for (int bit = 0; bit < 40; ++bit) {
+                    if ((mask & (1L << bit)) != 0) {
+                        result[offset + bit / 8] ^= (byte) (1 << (bit % 8));
+                    }
+                }
+                return result;
+            }
+            values[i] = value;
+            masks[i] = mask;
+        }
+        throw new AssertionError("no collision");
+    }
+
+    private static JavaArchive archive(File artifact, String app) {
+        return ShrinkWrap.create(JavaArchive.class)
+                .add(new FileAsset(artifact), "m2repo/org/test/artifact/1.0/artifact-1.0.jar")
+                .add(new StringAsset("org.test:artifact"), "bootstrap.conf")
+                .add(new ByteArrayAsset(app.getBytes(StandardCharsets.UTF_8)), "app.txt");
+    }
+
+    private static byte[] read(JarFile jar, String name) throws IOException {
+        ZipEntry entry = jar.getEntry(name);
+        try (InputStream in = jar.getInputStream(entry)) {
+            byte[] bytes = new byte[(int) entry.getSize()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+            return bytes;
+        }
+    }
+}
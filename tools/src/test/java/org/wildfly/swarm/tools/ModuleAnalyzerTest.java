@@ -15,11 +15,21 @@
  */
 package org.wildfly.swarm.tools;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.jboss.shrinkwrap.descriptor.api.jbossmodule13.ArtifactType;
+import org.jboss.shrinkwrap.descriptor.api.jbossmodule13.ModuleDescriptor;
+import org.jboss.shrinkwrap.descriptor.api.jbossmodule13.ResourcesType;
+import org.jboss.shrinkwrap.descriptor.impl.jbossmodule13.ModuleDescriptorImpl;
+import org.jboss.shrinkwrap.descriptor.spi.node.Node;
+import org.jboss.shrinkwrap.descriptor.spi.node.dom.XmlDomNodeImporterImpl;
 import org.junit.Test;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -47,4 +57,55 @@ public class ModuleAnalyzerTest {
         ModuleAnalyzer analyzer = new ModuleAnalyzer( moduleXml );
         assertThat( analyzer.getDependencies() ).hasSize(0);
     }
+
+    @Test
+    public void testModuleXmlFixtures() throws Exception {
+        assertModule("module-xmls/slotted-module.xml", "org.jboss.shrinkwrap", "impl",
+                     "org.jboss.shrinkwrap:shrinkwrap-api:${version.org.jboss.shrinkwrap}",
+                     "org.jboss.shrinkwrap:shrinkwrap-spi:${version.org.jboss.shrinkwrap}",
+                     "org.jboss.shrinkwrap:shrinkwrap-impl-base:${version.org.jboss.shrinkwrap}");
+        assertModule("module-xmls/mixed-resources-module.xml", "org.test.mixed", "runtime",
+                     "org.test:plain:1.0",
+                     "org.test:classified:1.0:tests",
+                     "org.test:property-versioned:${version.org.test}");
+        assertModule("module-xmls/no-resources-module.xml", "org.test.empty", "main");
+        assertModule("module.xml", "org.jboss.as.webservices", "main",
+                     "org.wildfly:wildfly-webservices-server-integration:10.0.0.CR4",
+                     "org.jboss.ws.cxf:jbossws-cxf-resources:5.1.0.Final:wildfly1000");
+        assertModule("alias-module.xml", "UNKNOWN", "main");
+    }
+
+    private void assertModule(String resource, String name, String slot, String... gavs) throws IOException {
+        byte[] content;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            assertThat(in).isNotNull();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                out.write(buf, 0, len);
+            }
+            content = out.toByteArray();
+        }
+
+        ModuleAnalyzer analyzer = new ModuleAnalyzer(new ByteArrayInputStream(content));
+        assertThat(analyzer.getName()).isEqualTo(name);
+        assertThat(analyzer.getSlot()).isEqualTo(slot);
+
+        List<String> actual = analyzer.getDependencies().stream().map(ArtifactSpec::mscGav).collect(Collectors.toList());
+        assertThat(actual).isEqualTo(Arrays.asList(gavs));
+        assertThat(actual).isEqualTo(domArtifacts(content));
+    }
+
+    private static List<String> domArtifacts(byte[] moduleXml) {
+        Node node = new XmlDomNodeImporterImpl().importAsNode(new ByteArrayInputStream(moduleXml), true);
+        List<String> gavs = new ArrayList<>();
+        if (node.getName().equals("module")) {
+            ModuleDescriptorImpl module = new ModuleDescriptorImpl(null, node);
+            for (ArtifactType<ResourcesType<ModuleDescriptor>> each : module.getOrCreateResources().getAllArtifact()) {
+                gavs.add(ArtifactSpec.fromMscGav(each.getName()).mscGav());
+            }
+        }
+        return gavs;
+    }
 }
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class PackageDetectorTest {
+
+    private static final int JARS = 200;
+
+    @ClassRule
+    public static TemporaryFolder wars = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static File war;
+
+    @BeforeClass
+    public static void createWar() throws Exception {
+        WebArchive archive = ShrinkWrap.create(WebArchive.class, "detector.war")
+                .addClass(ArtifactSpec.class);
+        for (int i = 0; i < JARS; ++i) {
+            archive.addAsLibrary(ShrinkWrap.create(JavaArchive.class, "lib-" + i + ".jar")
+                                         .addClasses(PackageDetector.class, DependencyManager.class, BuildTool.class, Assert.class));
+        }
+        war = wars.newFile("detector.war");
+        archive.as(ZipExporter.class).exportTo(war, true);
+    }
+
+    @Test
+    public void testDetectsPackagesOfNestedJars() throws Exception {
+        Map<String, Set<String>> packages = PackageDetector.detectPackages(war);
+
+        assertThat(packages.keySet()).contains("org.objectweb.asm", "org.jboss.shrinkwrap.api", "org.junit");
+        assertThat(packages.get("org.objectweb.asm")).contains(PackageDetector.PackageCollector.class.getName());
+    }
+
+    @Test
+    public void testCachesNestedJars() throws Exception {
+        PackageCache cache = new PackageCache(tmp.getRoot().toPath());
+
+        Map<String, Set<String>> scanned = PackageDetector.detectPackages(war, cache);
+        assertThat(cache.getHits()).isEqualTo(0);
+        assertThat(cache.getMisses()).isEqualTo(JARS);
+
+        Map<String, Set<String>> cached = PackageDetector.detectPackages(war, cache);
+        assertThat(cache.getHits()).isEqualTo(JARS);
+        assertThat(cache.getMisses()).isEqualTo(JARS);
+        assertThat(cached.keySet()).isEqualTo(scanned.keySet());
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            Map<String, Set<String>> sequential = PackageDetector.detectPackages(war, new PackageDetector.PackageCollector(), single, null);
+            Map<String, Set<String>> parallel = PackageDetector.detectPackages(war, new PackageDetector.PackageCollector(), ForkJoinPool.commonPool(), null);
+
+            assertThat(parallel).isEqualTo(sequential);
+        } finally {
+            single.shutdown();
+        }
+    }
+}
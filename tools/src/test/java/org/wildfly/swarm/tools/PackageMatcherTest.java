@@ -0,0 +1,80 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class PackageMatcherTest {
+
+    @Test
+    public void testMatchesPackagesAndSubPackages() throws Exception {
+        PackageMatcher matcher = new PackageMatcher(PackageAnalyzer.fractionPackages());
+
+        assertThat(matcher.match("javax.ws")).containsOnly("jaxrs");
+        assertThat(matcher.match("javax.ws.rs.core")).containsOnly("jaxrs");
+        assertThat(matcher.match("javax.servlet.http")).containsOnly("undertow");
+        assertThat(matcher.match("javax.wsdl")).isEmpty();
+        assertThat(matcher.match("javax")).isEmpty();
+        assertThat(matcher.match("org.example.javax.ws")).isEmpty();
+    }
+
+    @Test
+    public void testSyntheticPackages() throws Exception {
+        Map<String, Set<String>> fractionPackages = PackageAnalyzer.fractionPackages();
+        PackageMatcher matcher = new PackageMatcher(fractionPackages);
+
+        List<String> patterns = new ArrayList<>();
+        fractionPackages.values().forEach(patterns::addAll);
+
+        Random random = new Random(42);
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < 50000; ++i) {
+            StringBuilder name = new StringBuilder(random.nextInt(4) == 0 ? patterns.get(random.nextInt(patterns.size())) : "com.example");
+            int depth = random.nextInt(5);
+            for (int j = 0; j < depth; ++j) {
+                name.append(".p").append(random.nextInt(100));
+            }
+            packages.add(name.toString());
+        }
+
+        Set<String> matched = matcher.matchAll(packages);
+
+        Set<String> expected = new HashSet<>();
+        for (String pkg : packages) {
+            for (Map.Entry<String, Set<String>> fraction : fractionPackages.entrySet()) {
+                for (String pattern : fraction.getValue()) {
+                    if (pkg.equals(pattern) || pkg.startsWith(pattern + ".")) {
+                        expected.add(fraction.getKey());
+                    }
+                }
+            }
+        }
+
+        assertThat(matched).isEqualTo(expected);
+    }
+}
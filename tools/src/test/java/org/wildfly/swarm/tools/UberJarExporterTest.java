@@ -0,0 +1,178 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.FileAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.swarm.bootstrap.util.ArtifactCache;
+import org.wildfly.swarm.bootstrap.util.MappedJarIndex;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class UberJarExporterTest {
+
+    private static final int ARTIFACTS = 40;
+
+    private static final int CLASSES = 400;
+
+    @ClassRule
+    public static TemporaryFolder artifacts = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static JavaArchive archive;
+
+    @BeforeClass
+    public static void createArchive() throws Exception {
+        Random random = new Random(42);
+        archive = ShrinkWrap.create(JavaArchive.class);
+        for (int i = 0; i < ARTIFACTS; ++i) {
+            File artifact = artifacts.newFile("artifact" + i + "-1.0.jar");
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(artifact.toPath()))) {
+                for (int j = 0; j < 50; ++j) {
+                    out.putNextEntry(new ZipEntry("org/test/artifact" + i + "/Class" + j + ".class"));
+                    out.write(compressible(random, 4096));
+                    out.closeEntry();
+                }
+            }
+            archive.add(new FileAsset(artifact), "m2repo/org/test/artifact" + i + "/1.0/artifact" + i + "-1.0.jar");
+        }
+        for (int i = 0; i < CLASSES; ++i) {
+            archive.add(new ByteArrayAsset(compressible(random, 4096)), "org/test/app/Class" + i + ".class");
+        }
+    }
+
+    @Test
+    public void testExportsAllEntries() throws Exception {
+        File out = tmp.newFile("parallel-swarm.jar");
+        new UberJarExporter(archive).parallelism(4).exportTo(out);
+        assertSameContent(out, ZipEntry.DEFLATED);
+    }
+
+    @Test
+    public void testBoundsBufferedBytes() throws Exception {
+        // every artifact is too large to buffer, and at most one class is compressed ahead
+        File out = tmp.newFile("bounded-swarm.jar");
+        new UberJarExporter(archive).parallelism(4).maxBufferedBytes(4096).exportTo(out);
+        assertSameContent(out, ZipEntry.DEFLATED);
+    }
+
+    @Test
+    public void testStoresNestedJars() throws Exception {
+        File out = tmp.newFile("stored-swarm.jar");
+        new UberJarExporter(archive).storeNestedJars(true).exportTo(out);
+        assertSameContent(out, ZipEntry.STORED);
+
+        ArtifactCache cache = new ArtifactCache(MappedJarIndex.forJar(out), tmp.newFolder().toPath());
+        for (int i = 0; i < ARTIFACTS; ++i) {
+            assertThat(cache.resolve("m2repo/org/test/artifact" + i + "/1.0/artifact" + i + "-1.0.jar")).isNotNull();
+        }
+    }
+
+    @Test
+    public void testUnknownSizesAreNotBuffered() throws Exception {
+        // large enough to blow the bound if it were compressed ahead
+        byte[] large = compressible(new Random(42), 1024 * 1024);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        JavaArchive streamed = ShrinkWrap.create(JavaArchive.class);
+        for (int i = 0; i < 8; ++i) {
+            streamed.add(() -> {
+                threads.add(Thread.currentThread().getName());
+                return new ByteArrayInputStream(large);
+            }, "org/test/streamed/Resource" + i + ".bin");
+        }
+
+        File out = tmp.newFile("streamed-swarm.jar");
+        new UberJarExporter(streamed).parallelism(4).maxBufferedBytes(64 * 1024).exportTo(out);
+
+        assertThat(threads).hasSize(8).excludes("uberjar-deflater");
+        try (JarFile jar = new JarFile(out)) {
+            for (int i = 0; i < 8; ++i) {
+                ZipEntry entry = jar.getEntry("org/test/streamed/Resource" + i + ".bin");
+                assertThat(entry.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+                try (InputStream in = jar.getInputStream(entry)) {
+                    assertThat(read(in)).isEqualTo(large);
+                }
+            }
+        }
+    }
+
+    private static void assertSameContent(File out, int nestedJarMethod) throws IOException {
+        try (JarFile jar = new JarFile(out)) {
+            int files = 0;
+            for (ZipEntry each : Collections.list(jar.entries())) {
+                if (each.isDirectory()) {
+                    assertThat(archive.get(each.getName().substring(0, each.getName().length() - 1))).isNotNull();
+                    continue;
+                }
+                ++files;
+                try (InputStream expected = archive.get(each.getName()).getAsset().openStream();
+                     InputStream actual = jar.getInputStream(each)) {
+                    assertThat(read(actual)).isEqualTo(read(expected));
+                }
+                if (each.getName().endsWith(".jar")) {
+                    assertThat(each.getMethod()).isEqualTo(nestedJarMethod);
+                } else {
+                    assertThat(each.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+                }
+            }
+            assertThat(files).isEqualTo(ARTIFACTS + CLASSES);
+        }
+    }
+
+    private static byte[] compressible(Random random, int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            bytes[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return bytes;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+}
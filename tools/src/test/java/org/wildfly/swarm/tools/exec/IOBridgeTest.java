@@ -0,0 +1,186 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools.exec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class IOBridgeTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testCopiesOutputAndDetectsStart() throws Exception {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 5000; ++i) {
+            output.append("line ").append(i).append('\n');
+        }
+        output.append("WFLYSWARM WFLYSRV0010: Deployed \"app.war\"\n");
+        output.append("no newline at the end");
+
+        CountDownLatch latch = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Path file = tmp.getRoot().toPath().resolve("logs/stdout.log");
+
+        IOBridge bridge = new IOBridge(latch, new ByteArrayInputStream(output.toString().getBytes(StandardCharsets.UTF_8)), out, file);
+        bridge.run();
+        bridge.close();
+
+        assertThat(latch.getCount()).isEqualTo(0);
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(output.toString());
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).isEqualTo(output.toString());
+        assertThat(bridge.getError()).isNull();
+    }
+
+    @Test
+    public void testPumpsOnSharedPool() throws Exception {
+        PipedOutputStream process = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(process, 64 * 1024);
+        AtomicBoolean alive = new AtomicBoolean(true);
+        CountDownLatch latch = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        IOBridge bridge = new IOBridge(latch, in, out, null);
+        bridge.start(alive::get);
+
+        process.write("starting\nWFLYSRV00".getBytes(StandardCharsets.US_ASCII));
+        process.flush();
+        assertThat(latch.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        process.write("10: started\n".getBytes(StandardCharsets.US_ASCII));
+        process.flush();
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+
+        process.write("stopping".getBytes(StandardCharsets.US_ASCII));
+        process.close();
+        alive.set(false);
+
+        String expected = "starting\nWFLYSRV0010: started\nstopping";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (out.size() < expected.length() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(new String(out.toByteArray(), StandardCharsets.US_ASCII)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testFlushesIncompleteLineOnceIdle() throws Exception {
+        PipedOutputStream process = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(process, 64 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        IOBridge bridge = new IOBridge(new CountDownLatch(1), in, out, null);
+        bridge.start(() -> true);
+        try {
+            process.write("Password: ".getBytes(StandardCharsets.US_ASCII));
+            process.flush();
+
+            awaitOutput(out, "Password: ");
+            assertThat(new String(out.toByteArray(), StandardCharsets.US_ASCII)).isEqualTo("Password: ");
+        } finally {
+            bridge.close();
+        }
+    }
+
+    @Test
+    public void testChattyProcessesDoNotStarveOthers() throws Exception {
+        IOBridge[] chatty = new IOBridge[4];
+        for (int i = 0; i < chatty.length; ++i) {
+            chatty[i] = new IOBridge(new CountDownLatch(1), new EndlessOutput(), new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }, null);
+            chatty[i].start(() -> true);
+        }
+
+        PipedOutputStream process = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(process, 64 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOBridge quiet = new IOBridge(new CountDownLatch(1), in, out, null);
+        try {
+            quiet.start(() -> true);
+            process.write("hello\n".getBytes(StandardCharsets.US_ASCII));
+            process.flush();
+
+            awaitOutput(out, "hello\n");
+            assertThat(new String(out.toByteArray(), StandardCharsets.US_ASCII)).isEqualTo("hello\n");
+        } finally {
+            quiet.close();
+            for (IOBridge each : chatty) {
+                each.close();
+            }
+        }
+    }
+
+    private static void awaitOutput(ByteArrayOutputStream out, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (out.size() < expected.length() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * A process that always has another buffer of output ready.
+     */
+    private static class EndlessOutput extends InputStream {
+
+        private static final byte[] LINE = "chatter chatter chatter\n".getBytes(StandardCharsets.US_ASCII);
+
+        @Override
+        public int read() {
+            return LINE[0];
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            for (int i = 0; i < len; ++i) {
+                b[off + i] = LINE[i % LINE.length];
+            }
+            return len;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return 8192;
+        }
+    }
+}
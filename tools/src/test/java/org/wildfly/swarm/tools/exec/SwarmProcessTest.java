@@ -0,0 +1,140 @@
+/**
+ * Copyright 2015-2016 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.swarm.tools.exec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+/**
+ * @author Bob McWhirter
+ */
+public class SwarmProcessTest {
+
+    @Test
+    public void testReadyFile() throws Exception {
+        Path readyFile = Files.createTempDirectory("swarm-process").resolve("ready");
+        StubProcess stub = new StubProcess();
+        SwarmProcess process = new SwarmProcess(stub, new ByteArrayOutputStream(), null, new ByteArrayOutputStream(), null, readyFile);
+
+        assertThat(process.isReady()).isFalse();
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                Files.write(readyFile, "app.war".getBytes());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        process.awaitDeploy(10, TimeUnit.SECONDS);
+        assertThat(process.isReady()).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+
+        stub.exit();
+        process.stop();
+        assertThat(Files.exists(readyFile)).isFalse();
+    }
+
+    @Test
+    public void testStopsWaitingWhenProcessExits() throws Exception {
+        StubProcess stub = new StubProcess();
+        SwarmProcess process = new SwarmProcess(stub, new ByteArrayOutputStream(), null, new ByteArrayOutputStream(), null,
+                                                Files.createTempDirectory("swarm-process").resolve("ready"));
+        stub.exit();
+
+        long start = System.nanoTime();
+        process.awaitDeploy(10, TimeUnit.SECONDS);
+        assertThat(process.isReady()).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+    }
+
+    private static class StubProcess extends Process {
+
+        StubProcess() throws Exception {
+            this.stdout = new PipedInputStream(this.stdoutWriter);
+            this.stderr = new PipedInputStream(this.stderrWriter);
+        }
+
+        void exit() throws Exception {
+            this.alive = false;
+            this.stdoutWriter.close();
+            this.stderrWriter.close();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return this.stdout;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return this.stderr;
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            while (this.alive) {
+                Thread.sleep(10);
+            }
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (this.alive) {
+                throw new IllegalThreadStateException();
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return this.alive;
+        }
+
+        @Override
+        public void destroy() {
+            this.alive = false;
+        }
+
+        private final PipedOutputStream stdoutWriter = new PipedOutputStream();
+
+        private final PipedOutputStream stderrWriter = new PipedOutputStream();
+
+        private final PipedInputStream stdout;
+
+        private final PipedInputStream stderr;
+
+        private volatile boolean alive = true;
+    }
+}